@@ -0,0 +1,128 @@
+package termproject;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: findElement on String and Long keys, ordered either by a
+ * comparator written the way IntegerComparator is, with every test built
+ * from isLessThan and a checked cast, or by a ComparatorAdapter answering
+ * each comparison with one compareTo.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+
+    private static final int KEYS = 100000;
+    private static final int PROBES = 1 << 16;
+
+    @Param({"String", "Long"})
+    public String keyType;
+
+    @Param({"isLessThan", "compare"})
+    public String comparator;
+
+    @Param({"4", "32"})
+    public int order;
+
+    private TwoFourTree<Object,Object> tree;
+    private Object[] probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Comparator comp;
+        if ("compare".equals(comparator)) {
+            comp = ComparatorAdapter.naturalOrder();
+        }
+        else if ("String".equals(keyType)) {
+            comp = new LessThanComparator() {
+                boolean less(Object obj1, Object obj2) {
+                    return ((String) obj1).compareTo((String) obj2) < 0;
+                }
+            };
+        }
+        else {
+            comp = new LessThanComparator() {
+                boolean less(Object obj1, Object obj2) {
+                    return ((Long) obj1).longValue() < ((Long) obj2).longValue();
+                }
+            };
+        }
+        tree = new TwoFourTree<Object,Object>(comp, order);
+
+        Random rng = new Random(42);
+        Object[] keys = new Object[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            long value = rng.nextLong();
+            keys[i] = "String".equals(keyType) ? "key-" + Long.toHexString(value) : (Object) value;
+            tree.insertElement(keys[i], keys[i]);
+        }
+        probes = new Object[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = keys[rng.nextInt(KEYS)];
+        }
+    }
+
+    @Benchmark
+    public Object find() {
+        return tree.findElement(probes[next++ & (PROBES - 1)]);
+    }
+
+    /**
+     * Every test from one less-than, as IntegerComparator does it.
+     */
+    abstract static class LessThanComparator implements Comparator {
+
+        abstract boolean less(Object obj1, Object obj2);
+
+        public boolean isLessThan(Object obj1, Object obj2) {
+            try {
+                return less(obj1, obj2);
+            }
+            catch (ClassCastException exc) {
+                throw new TwoFourTreeException("keys of the wrong type");
+            }
+        }
+
+        public boolean isLessThanOrEqualTo(Object obj1, Object obj2) {
+            return !isLessThan(obj2, obj1);
+        }
+
+        public boolean isGreaterThan(Object obj1, Object obj2) {
+            return isLessThan(obj2, obj1);
+        }
+
+        public boolean isGreaterThanOrEqualTo(Object obj1, Object obj2) {
+            return !isLessThan(obj1, obj2);
+        }
+
+        public boolean isEqual(Object obj1, Object obj2) {
+            return !isLessThan(obj1, obj2) && !isLessThan(obj2, obj1);
+        }
+
+        public boolean isComparable(Object obj) {
+            return true;
+        }
+    }
+}
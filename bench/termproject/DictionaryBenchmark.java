@@ -0,0 +1,232 @@
+package termproject;
+
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: findElement, and insertElement paired with removeElement,
+ * on Dictionary implementations and on TreeMap, ConcurrentSkipListMap and
+ * TwoFourTree used as a NavigableMap ("TwoFourTreeMap"), for several key
+ * distributions and sizes.  Every run is seeded, so runs can be compared
+ * against a saved baseline (see the bench-baseline target in build.xml).
+ *
+ * Distributions: "uniform" loads random keys and probes them at random;
+ * "zipfian" loads 0..size-1 and probes them with a Zipf(0.99) skew, the hot
+ * keys scattered over the key space; "sequential" loads 0..size-1 and
+ * probes them in order; "duplicates" loads keys from a range a hundredth
+ * of the size, so each key is there about a hundred times.  The maps keep
+ * one entry per key, so they hold fewer entries with duplicates.
+ *
+ * insertRemove inserts a key drawn from the same distribution but moved
+ * past every loaded key, then removes it, so the size stays constant and
+ * the maps never just replace an entry.
+ *
+ * Throughput and sampled latency (with percentiles) are both reported; add
+ * "-prof gc" for allocation rates.  The largest sizes need a large heap,
+ * e.g. -jvmArgs -Xmx24g for -p size=100000000.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark {
+
+    private static final int PROBES = 1 << 20;
+
+    @Param({"TwoFourTree", "TwoFourTreeMap", "PersistentTwoFourTree", "TreeMap", "ConcurrentSkipListMap"})
+    public String impl;
+
+    @Param({"uniform", "zipfian", "sequential", "duplicates"})
+    public String distribution;
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    private Dictionary<Object,Object> dictionary;
+    // boxed up front, so the allocation rate is the structure's alone
+    private Integer[] probes;
+    private Integer[] writes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random rng = new Random(42);
+        int[] keys = new int[size];
+        int keyRange = "duplicates".equals(distribution) ? Math.max(1, size / 100) : size;
+        for (int i = 0; i < size; i++) {
+            if ("uniform".equals(distribution)) {
+                keys[i] = rng.nextInt(Integer.MAX_VALUE / 2);
+            }
+            else if ("duplicates".equals(distribution)) {
+                keys[i] = rng.nextInt(keyRange);
+            }
+            else {
+                keys[i] = i;
+            }
+        }
+
+        int[] drawn = new int[PROBES];
+        ZipfGenerator zipf = "zipfian".equals(distribution) ? new ZipfGenerator(size, 0.99) : null;
+        for (int i = 0; i < PROBES; i++) {
+            if ("uniform".equals(distribution)) {
+                drawn[i] = keys[rng.nextInt(size)];
+            }
+            else if ("zipfian".equals(distribution)) {
+                drawn[i] = scatter(zipf.next(rng), size);
+            }
+            else if ("sequential".equals(distribution)) {
+                drawn[i] = i % size;
+            }
+            else {
+                drawn[i] = rng.nextInt(keyRange);
+            }
+        }
+        int writeOffset = "uniform".equals(distribution) ? Integer.MAX_VALUE / 2 : keyRange;
+        probes = new Integer[PROBES];
+        writes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = drawn[i];
+            writes[i] = writeOffset + drawn[i];
+        }
+
+        if ("TwoFourTree".equals(impl)) {
+            dictionary = new TwoFourTree<Object,Object>(new IntegerComparator());
+        }
+        else if ("PersistentTwoFourTree".equals(impl)) {
+            dictionary = new PersistentTwoFourTree(new IntegerComparator());
+        }
+        else if ("TwoFourTreeMap".equals(impl)) {
+            // the tree through its NavigableMap methods, as TreeMap is run
+            dictionary = new MapDictionary(new TwoFourTree<Integer, Object>(new IntegerComparator()));
+        }
+        else if ("TreeMap".equals(impl)) {
+            dictionary = new MapDictionary(new TreeMap<Integer, Object>());
+        }
+        else {
+            dictionary = new MapDictionary(new ConcurrentSkipListMap<Integer, Object>());
+        }
+        for (int i = 0; i < size; i++) {
+            dictionary.insertElement(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Object find() {
+        return dictionary.findElement(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object insertRemove() {
+        Integer key = writes[next++ & (PROBES - 1)];
+        dictionary.insertElement(key, key);
+        return dictionary.removeElement(key);
+    }
+
+    // spreads rank r over 0..n-1, so the hottest keys are not neighbours
+    private static int scatter(int rank, int n) {
+        return (int) (((rank * 0x9E3779B97F4A7C15L) >>> 1) % n);
+    }
+
+    /**
+     * Zipf-distributed ranks in 0..n-1, rank 0 the most frequent, by the
+     * method of Gray et al., "Quickly Generating Billion-Record Synthetic
+     * Databases": constant time a sample after a linear setup.
+     */
+    static class ZipfGenerator {
+
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        ZipfGenerator(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            zetaN = zeta(n, theta);
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        int next(Random rng) {
+            double u = rng.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            return Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * A Dictionary over a NavigableMap, keeping one entry per key.  Null
+     * elements are refused, so removeElement can tell a missing key from
+     * the value remove returns.
+     */
+    static class MapDictionary implements Dictionary<Object,Object> {
+
+        private final NavigableMap<Integer, Object> map;
+
+        MapDictionary(NavigableMap<Integer, Object> map) {
+            this.map = map;
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        public Object findElement(Object key) {
+            return map.get(key);
+        }
+
+        public void insertElement(Object key, Object element) {
+            map.put((Integer) key, Objects.requireNonNull(element));
+        }
+
+        public Object removeElement(Object key) {
+            // no element is null, so a null here means the key was missing
+            Object element = map.remove(key);
+            if (element == null) {
+                throw new ElementNotFoundException("key not found: " + key);
+            }
+            return element;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package termproject;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Compares the in-node searches on full nodes of several
+ * widths.  The linear search is the original FFGTE scan.  Keys in a node
+ * are either consecutive ("sequential") or spread out at random ("random").
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeSearchBenchmark {
+
+    private static final int NODES = 256;
+    private static final int PROBES = 4096;
+
+    @Param({"3", "7", "15", "31", "63", "64", "65", "127"})
+    public int maxItems;
+
+    @Param({"random", "sequential"})
+    public String keys;
+
+    private final Comparator comp = new IntegerComparator();
+    private final NodeSearch linear = new LinearNodeSearch();
+    private final NodeSearch binary = new BinaryNodeSearch();
+    private final NodeSearch branchless = new IntegerNodeSearch();
+
+    private TFNode[] nodes;
+    private Integer[] probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random rng = new Random(42);
+        nodes = new TFNode[NODES];
+        int range = "random".equals(keys) ? maxItems * 1000 : maxItems;
+        for (int n = 0; n < NODES; n++) {
+            int[] sorted = new int[maxItems];
+            for (int i = 0; i < maxItems; i++) {
+                sorted[i] = "random".equals(keys) ? rng.nextInt(range) : i;
+            }
+            Arrays.sort(sorted);
+            nodes[n] = new TFNode(maxItems);
+            for (int i = 0; i < maxItems; i++) {
+                nodes[n].addEntry(i, sorted[i], sorted[i]);
+            }
+        }
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = rng.nextInt(range + 1);
+        }
+    }
+
+    @Benchmark
+    public int linear() {
+        int i = next++ & (PROBES - 1);
+        return linear.FFGTE(nodes[i & (NODES - 1)], probes[i], comp);
+    }
+
+    @Benchmark
+    public int binary() {
+        int i = next++ & (PROBES - 1);
+        return binary.FFGTE(nodes[i & (NODES - 1)], probes[i], comp);
+    }
+
+    @Benchmark
+    public int branchless() {
+        int i = next++ & (PROBES - 1);
+        return branchless.FFGTE(nodes[i & (NODES - 1)], probes[i], comp);
+    }
+}
@@ -0,0 +1,120 @@
+package termproject;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A 95% read, 5% write mix against one shared TwoFourTree,
+ * guarded either by a StampedDictionary or by a plain synchronized wrapper,
+ * or against a PersistentTwoFourTree whose readers take no lock at all and
+ * whose writer publishes with a compare-and-set of the root.
+ * Each group runs 19 reader threads and one writer thread that alternately
+ * inserts and removes keys of its own, so the tree size stays constant.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StampedDictionaryBenchmark {
+
+    private static final int KEYS = 100000;
+
+    @Param({"stamped", "synchronized", "copy-on-write"})
+    public String lock;
+
+    private Dictionary<Object,Object> dictionary;
+    private int nextWrite;
+
+    @Setup
+    public void setup() {
+        if ("copy-on-write".equals(lock)) {
+            dictionary = new PersistentTwoFourTree(new IntegerComparator(), 4, true);
+            for (int i = 0; i < KEYS; i++) {
+                dictionary.insertElement(i, i);
+            }
+            return;
+        }
+        TwoFourTree<Object,Object> tree = new TwoFourTree<Object,Object>(new IntegerComparator());
+        for (int i = 0; i < KEYS; i++) {
+            tree.insertElement(i, i);
+        }
+        if ("stamped".equals(lock)) {
+            dictionary = new StampedDictionary<Object,Object>(tree);
+        }
+        else {
+            dictionary = new SynchronizedDictionary(tree);
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(19)
+    public Object read() {
+        return dictionary.findElement(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Object write() {
+        // keys above KEYS belong to the writer; insert one, then remove it
+        int key = KEYS + (nextWrite >> 1);
+        if ((nextWrite++ & 1) == 0) {
+            dictionary.insertElement(key, key);
+            return null;
+        }
+        return dictionary.removeElement(key);
+    }
+
+    /**
+     * The baseline: every operation holds the same monitor.
+     */
+    static class SynchronizedDictionary implements Dictionary<Object,Object> {
+
+        private final Dictionary<Object,Object> dictionary;
+
+        SynchronizedDictionary(Dictionary<Object,Object> dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        public synchronized int size() {
+            return dictionary.size();
+        }
+
+        public synchronized boolean isEmpty() {
+            return dictionary.isEmpty();
+        }
+
+        public synchronized Object findElement(Object key) {
+            return dictionary.findElement(key);
+        }
+
+        public synchronized void insertElement(Object key, Object element) {
+            dictionary.insertElement(key, element);
+        }
+
+        public synchronized Object removeElement(Object key) {
+            return dictionary.removeElement(key);
+        }
+    }
+}
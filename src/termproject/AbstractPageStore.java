@@ -0,0 +1,204 @@
+package termproject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: The bookkeeping shared by page stores that keep their pages
+ * in segments of many pages each: the header page, the free page list and
+ * the metadata slots.  A subclass supplies the segments and releases them
+ * on close; a new segment is added whenever the pages in use outgrow the
+ * last one, and must read as zeros.
+ *
+ * Page 0 holds the header: a magic number, the page size, the number of
+ * pages, the head of the free page list and the metadata slots.  A free page
+ * holds the id of the next free page in its first four bytes.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public abstract class AbstractPageStore
+        implements PageStore {
+
+    private static final long MAGIC = 0x3234547265655047L;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int PAGE_SIZE_OFFSET = 8;
+    private static final int PAGE_COUNT_OFFSET = 12;
+    private static final int FREE_HEAD_OFFSET = 16;
+    private static final int FREE_COUNT_OFFSET = 20;
+    private static final int META_OFFSET = 24;
+
+    private final int pageSize;
+    private final int pagesPerSegment;
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private ByteBuffer header;
+
+    /**
+     * @param pageSize page size; a power of two of at least 256
+     * @param segmentBytes bytes wanted in a segment; a segment always holds
+     * at least one page
+     */
+    protected AbstractPageStore(int pageSize, int segmentBytes) {
+        if (pageSize < 256 || Integer.bitCount(pageSize) != 1) {
+            throw new TwoFourTreeException("page size must be a power of two of at least 256: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        pagesPerSegment = Math.max(1, segmentBytes / pageSize);
+    }
+
+    /**
+     * Returns a new segment of the given number of bytes, all zero unless
+     * it holds pages kept from an earlier run.
+     * @param index number of segments before this one
+     * @param bytes size of the segment
+     */
+    protected abstract ByteBuffer newSegment(int index, long bytes) throws IOException;
+
+    /**
+     * Gives back the segments when the store closes.  No page will be used
+     * afterwards.
+     */
+    protected abstract void release(List<ByteBuffer> released) throws IOException;
+
+    /**
+     * Sets up the header, or checks the one found in the first segment, and
+     * adds the segments the header says are in use.  Subclasses call this
+     * from their constructors once newSegment can be called.
+     * @param created true if the store is new
+     * @exception TwoFourTreeException if the header is not a page store's or
+     * has another page size
+     */
+    protected void openHeader(boolean created) throws IOException {
+        addSegment();
+        header = pageView(0);
+        if (created) {
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(PAGE_SIZE_OFFSET, pageSize);
+            header.putInt(PAGE_COUNT_OFFSET, 1);
+        }
+        else if (header.getLong(MAGIC_OFFSET) != MAGIC) {
+            throw new TwoFourTreeException("not a page store");
+        }
+        else if (header.getInt(PAGE_SIZE_OFFSET) != pageSize) {
+            throw new TwoFourTreeException("page store has page size "
+                    + header.getInt(PAGE_SIZE_OFFSET) + ", not " + pageSize);
+        }
+        while (segments.size() * (long) pagesPerSegment < pageCount()) {
+            addSegment();
+        }
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public ByteBuffer getPage(int pageId) {
+        if (pageId < 0 || pageId >= pageCount()) {
+            throw new TwoFourTreeException("no such page: " + pageId);
+        }
+        return pageView(pageId);
+    }
+
+    public int allocatePage() {
+        int pageId = header.getInt(FREE_HEAD_OFFSET);
+        if (pageId != 0) {
+            ByteBuffer page = getPage(pageId);
+            header.putInt(FREE_HEAD_OFFSET, page.getInt(0));
+            header.putInt(FREE_COUNT_OFFSET, header.getInt(FREE_COUNT_OFFSET) - 1);
+            for (int offset = 0; offset < pageSize; offset += 8) {
+                page.putLong(offset, 0);
+            }
+            return pageId;
+        }
+
+        // a new segment reads as zeros already
+        pageId = pageCount();
+        if (pageId == segments.size() * pagesPerSegment) {
+            try {
+                addSegment();
+            }
+            catch (IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+        }
+        header.putInt(PAGE_COUNT_OFFSET, pageId + 1);
+        return pageId;
+    }
+
+    public void freePage(int pageId) {
+        if (pageId <= 0) {
+            throw new TwoFourTreeException("no such page: " + pageId);
+        }
+        getPage(pageId).putInt(0, header.getInt(FREE_HEAD_OFFSET));
+        header.putInt(FREE_HEAD_OFFSET, pageId);
+        header.putInt(FREE_COUNT_OFFSET, header.getInt(FREE_COUNT_OFFSET) + 1);
+    }
+
+    public int getPagesInUse() {
+        return pageCount() - 1 - header.getInt(FREE_COUNT_OFFSET);
+    }
+
+    /**
+     * @return bytes held in segments, in use or not
+     */
+    public long getReservedBytes() {
+        return segments.size() * (long) pagesPerSegment * pageSize;
+    }
+
+    public long getMeta(int slot) {
+        return header.getLong(metaOffset(slot));
+    }
+
+    public void setMeta(int slot, long value) {
+        header.putLong(metaOffset(slot), value);
+    }
+
+    /**
+     * Syncs and releases the segments.  Closing again does nothing.
+     */
+    public void close() throws IOException {
+        if (header == null) {
+            return;
+        }
+        sync();
+        List<ByteBuffer> released = new ArrayList<ByteBuffer>(segments);
+        segments.clear();
+        header = null;
+        release(released);
+    }
+
+    /**
+     * @return the segments, in order, for sync
+     */
+    protected List<ByteBuffer> getSegments() {
+        return segments;
+    }
+
+    private int pageCount() {
+        return header.getInt(PAGE_COUNT_OFFSET);
+    }
+
+    private static int metaOffset(int slot) {
+        if (slot < 0 || slot >= META_SLOTS) {
+            throw new TwoFourTreeException("no such metadata slot: " + slot);
+        }
+        return META_OFFSET + 8 * slot;
+    }
+
+    private ByteBuffer pageView(int pageId) {
+        ByteBuffer page = segments.get(pageId / pagesPerSegment).duplicate();
+        int offset = (pageId % pagesPerSegment) * pageSize;
+        page.position(offset);
+        page.limit(offset + pageSize);
+        return page.slice();
+    }
+
+    private void addSegment() throws IOException {
+        segments.add(newSegment(segments.size(), (long) pagesPerSegment * pageSize));
+    }
+}
@@ -0,0 +1,40 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: What TwoFourTree.applyBatch did with a MutationBatch: how
+ * many mutations it applied, how many removes it skipped because their key
+ * was not in the tree, and how long the whole batch took.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class BatchResult {
+
+    private final int applied;
+    private final int skipped;
+    private final long elapsedNanos;
+
+    public BatchResult(int applied, int skipped, long elapsedNanos) {
+        this.applied = applied;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public String toString() {
+        return "applied " + applied + ", skipped " + skipped
+                + " in " + (elapsedNanos / 1000) + " us";
+    }
+}
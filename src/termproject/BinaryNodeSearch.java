@@ -0,0 +1,28 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Binary searches the items of a node.  Used for wide B-tree
+ * nodes, where it needs log2(n) comparisons instead of up to n.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class BinaryNodeSearch implements NodeSearch {
+
+    public int FFGTE (TFNode node, Object key, Comparator comp) {
+		int low = 0;
+		int high = node.getNumItems();
+		// binary search for the first item not less than key; items in
+		// [low, high) are still undecided
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(comp.compare(node.getKey(mid), key) < 0) {
+				low = mid + 1;
+			}else {
+				high = mid;
+			}
+		}
+		return low;
+    }
+}
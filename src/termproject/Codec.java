@@ -0,0 +1,37 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Turns keys or elements into bytes and back, for trees and
+ * snapshots that keep their data outside the Java heap.  A codec writes at
+ * and reads from the buffer's position, advancing it past the value.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface Codec {
+
+    /**
+     * @param value value to be encoded
+     * @return number of bytes encode will write for value
+     * @exception RuntimeException if encode would reject value, so that
+     * callers can check a value before they change anything
+     */
+    public int encodedSize (Object value);
+
+    /**
+     * Writes value at the buffer's position.
+     * @param value value to be encoded
+     * @param out buffer with at least encodedSize(value) bytes remaining
+     */
+    public void encode (Object value, ByteBuffer out);
+
+    /**
+     * Reads a value written by encode from the buffer's position.
+     * @param in buffer positioned at an encoded value
+     * @return the value
+     */
+    public Object decode (ByteBuffer in);
+}
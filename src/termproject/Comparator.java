@@ -22,4 +22,18 @@ public interface Comparator {
     public boolean isEqual (Object obj1, Object obj2);
 
     public boolean isComparable (Object obj);
+
+    /**
+     * Compares two keys in one call.  Searches use this instead of the
+     * boolean tests, so a comparator that can answer it directly should
+     * override it; the default costs up to two isLessThan calls.
+     * @return a negative number, zero or a positive number as obj1 is less
+     * than, equal to or greater than obj2
+     */
+    public default int compare (Object obj1, Object obj2) {
+        if (isLessThan(obj1, obj2)) {
+            return -1;
+        }
+        return isLessThan(obj2, obj1) ? 1 : 0;
+    }
 }
\ No newline at end of file
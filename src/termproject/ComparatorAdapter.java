@@ -0,0 +1,88 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Lets a java.util.Comparator, or the natural order of
+ * Comparable keys, order a tree.  Every test is answered from a single
+ * three-way compare, which is also what the trees' searches call, so a
+ * comparison costs one call to the underlying order however it is asked.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class ComparatorAdapter
+        implements Comparator {
+
+    private final java.util.Comparator<Object> order;
+    private final boolean natural;
+
+    /**
+     * @param order order for keys; its compare must accept any two keys
+     * put in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public ComparatorAdapter(java.util.Comparator<?> order) {
+        this.order = (java.util.Comparator<Object>) order;
+        natural = false;
+    }
+
+    private ComparatorAdapter() {
+        order = null;
+        natural = true;
+    }
+
+    /**
+     * @return an adapter ordering Comparable keys by their compareTo
+     */
+    public static ComparatorAdapter naturalOrder() {
+        return new ComparatorAdapter();
+    }
+
+    /**
+     * @return the order adapted, or null for natural order
+     */
+    public java.util.Comparator<Object> getOrder() {
+        return order;
+    }
+
+    @SuppressWarnings("unchecked")
+    public int compare(Object obj1, Object obj2) {
+        if (natural) {
+            return ((Comparable<Object>) obj1).compareTo(obj2);
+        }
+        return order.compare(obj1, obj2);
+    }
+
+    public boolean isLessThan(Object obj1, Object obj2) {
+        return (compare(obj1, obj2) < 0);
+    }
+
+    public boolean isLessThanOrEqualTo(Object obj1, Object obj2) {
+        return (compare(obj1, obj2) <= 0);
+    }
+
+    public boolean isGreaterThan(Object obj1, Object obj2) {
+        return (compare(obj1, obj2) > 0);
+    }
+
+    public boolean isGreaterThanOrEqualTo(Object obj1, Object obj2) {
+        return (compare(obj1, obj2) >= 0);
+    }
+
+    public boolean isEqual(Object obj1, Object obj2) {
+        return (compare(obj1, obj2) == 0);
+    }
+
+    public boolean isComparable(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        try {
+            compare(obj, obj);
+            return true;
+        }
+        catch (ClassCastException exc) {
+            return false;
+        }
+    }
+}
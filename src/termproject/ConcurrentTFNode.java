@@ -0,0 +1,30 @@
+package termproject;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A TFNode with its own StampedLock, for ConcurrentTwoFourTree.
+ * Writers hold the write lock while they change the node; readers take an
+ * optimistic stamp and validate it after reading, so a reader never blocks
+ * and never trusts what it read from a node that changed underneath it.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class ConcurrentTFNode extends TFNode {
+
+    private final StampedLock nodeLock = new StampedLock();
+
+    public ConcurrentTFNode(int maxItems) {
+        super (maxItems);
+    }
+
+    public StampedLock getLock() {
+        return nodeLock;
+    }
+
+    public ConcurrentTFNode getChild (int index) {
+        return (ConcurrentTFNode) super.getChild(index);
+    }
+}
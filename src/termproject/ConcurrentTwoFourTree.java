@@ -0,0 +1,680 @@
+package termproject;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A thread-safe B-tree with fine-grained node locking.
+ *
+ * Readers take no locks.  They walk down with an optimistic stamp on each
+ * ConcurrentTFNode, validating a node's stamp after reading it and again
+ * after taking its child's stamp, and start over from the root if any
+ * validation fails.
+ *
+ * Writers insert and remove top-down, the same way as a top-down
+ * TwoFourTree: full nodes are split and minimal nodes refilled before they
+ * are entered, so a change never travels back up.  A writer therefore only
+ * holds the write locks of the node it is in, the child it is entering and,
+ * while refilling that child, one of its siblings; locks are only taken
+ * downwards or sideways under a held parent, so writers cannot deadlock.
+ * The root is replaced only while its write lock is held.
+ *
+ * Nodes keep no parent pointers, and the tree is never left without a root:
+ * an empty tree is an empty leaf.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class ConcurrentTwoFourTree
+        implements Dictionary<Object,Object> {
+
+    private static final int DEFAULT_ORDER = 4;
+
+    private final Comparator treeComp;
+    private final NodeSearch nodeSearch;
+    private final int maxItems;
+    private final int minItems;
+    private final LongAdder size = new LongAdder();
+    private volatile ConcurrentTFNode treeRoot;
+
+    public ConcurrentTwoFourTree(Comparator comp) {
+        this (comp, DEFAULT_ORDER);
+    }
+
+    /**
+     * Creates a concurrent B-tree of the given order.  Nodes are split on the
+     * way down, which needs an even order.
+     * @param comp comparator for keys
+     * @param order maximum number of children of a node; even and at least 4
+     */
+    public ConcurrentTwoFourTree(Comparator comp, int order) {
+        if (order < 4 || order % 2 != 0) {
+            throw new TwoFourTreeException("order must be even and at least 4: " + order);
+        }
+        treeComp = comp;
+        maxItems = order - 1;
+        minItems = order / 2 - 1;
+        nodeSearch = TwoFourTree.chooseNodeSearch(comp, maxItems);
+        treeRoot = new ConcurrentTFNode(maxItems);
+    }
+
+    public int size() {
+        return size.intValue();
+    }
+
+    public boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present.  Never blocks.
+     * @param key to be searched for
+     * @return object corresponding to key; null if not found
+     */
+    public Object findElement(Object key) {
+		retry:
+		while(true) {
+			ConcurrentTFNode node = treeRoot;
+			long stamp = node.getLock().tryOptimisticRead();
+			// a writer holds the node, or the root was replaced meanwhile
+			if(stamp == 0 || node != treeRoot) {
+				Thread.yield();
+				continue;
+			}
+
+			while(true) {
+				boolean found = false;
+				Object element = null;
+				ConcurrentTFNode child = null;
+				// what we read may be torn by a writer; anything it makes us
+				// throw only counts if the node turns out to be unchanged
+				try {
+					int index = FFGTE(node, key);
+					if(index != node.getNumItems()
+							&& treeComp.compare(node.getKey(index), key) == 0) {
+						found = true;
+						element = node.getElement(index);
+					}else {
+						child = node.getChild(index);
+					}
+				}
+				catch(RuntimeException exc) {
+					if(node.getLock().validate(stamp)) {
+						throw exc;
+					}
+					continue retry;
+				}
+				if(!node.getLock().validate(stamp)) {
+					continue retry;
+				}
+				// found or not is decided by the key, since a stored element
+				// may itself be null
+				if(found || child == null) {
+					return element;
+				}
+
+				// take the child's stamp before checking that node did not
+				// change, so the child was really node's child at that moment
+				long childStamp = child.getLock().tryOptimisticRead();
+				if(childStamp == 0 || !node.getLock().validate(stamp)) {
+					Thread.yield();
+					continue retry;
+				}
+				node = child;
+				stamp = childStamp;
+			}
+		}
+    }
+
+    /**
+     * Inserts provided element into the Dictionary
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(Object key, Object element) {
+		ConcurrentTFNode node = lockRoot();
+
+		// a full root is split under a new root, which is published while
+		// the old root is still locked
+		if(node.getNumItems() == maxItems) {
+			ConcurrentTFNode newRoot = new ConcurrentTFNode(maxItems);
+			lock(newRoot);
+			newRoot.setChild(0, node);
+			ConcurrentTFNode sibling = splitChild(newRoot, 0);
+			treeRoot = newRoot;
+			unlock(node);
+			unlock(sibling);
+			node = newRoot;
+		}
+
+		while(node.getChild(0) != null) {
+			int index = FFGTE(node, key);
+			ConcurrentTFNode child = node.getChild(index);
+			lock(child);
+			if(child.getNumItems() == maxItems) {
+				ConcurrentTFNode sibling = splitChild(node, index);
+				// the middle item moved up to index; keys above it go right
+				if(treeComp.compare(key, node.getKey(index)) > 0) {
+					unlock(child);
+					child = sibling;
+				}else {
+					unlock(sibling);
+				}
+			}
+			// child is not full, so nothing below can change node again
+			unlock(node);
+			node = child;
+		}
+
+		node.insertEntry(FFGTE(node, key), key, element);
+		size.increment();
+		unlock(node);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then
+     * removes and returns corresponding object
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public Object removeElement(Object key) throws ElementNotFoundException {
+		ConcurrentTFNode node = lockRoot();
+		while(true) {
+			int index = FFGTE(node, key);
+			boolean found = index != node.getNumItems()
+					&& treeComp.compare(node.getKey(index), key) == 0;
+
+			if(node.getChild(0) == null) {
+				if(!found) {
+					unlock(node);
+					throw new ElementNotFoundException("key is not in tree: " + key);
+				}
+				Object returnData = node.removeEntry(index);
+				size.decrement();
+				unlock(node);
+				return returnData;
+			}
+
+			// the key's item sits between children index and index + 1, and
+			// its successor is in the latter
+			int childIndex = found ? index + 1 : index;
+			ConcurrentTFNode child = node.getChild(childIndex);
+			lock(child);
+			if(child.getNumItems() <= minItems) {
+				// refilling can move items of node, so search it again
+				ConcurrentTFNode survivor = refillChild(node, childIndex);
+				if(node.getNumItems() < 1) {
+					// only the root can empty; its one child replaces it
+					treeRoot = survivor;
+					unlock(node);
+					node = survivor;
+				}else {
+					unlock(survivor);
+				}
+				continue;
+			}
+			if(!found) {
+				// child has items to spare, so nothing below can change node
+				unlock(node);
+				node = child;
+				continue;
+			}
+
+			// go left down to a leaf for the successor, refilling each child
+			// before entering it; node stays locked until its item is replaced
+			ConcurrentTFNode current = child;
+			while(current.getChild(0) != null) {
+				ConcurrentTFNode next = current.getChild(0);
+				lock(next);
+				if(next.getNumItems() <= minItems) {
+					// a leftmost child is refilled from the right and survives
+					next = refillChild(current, 0);
+				}
+				unlock(current);
+				current = next;
+			}
+			Object successorKey = current.getKey(0);
+			Object successorElement = current.removeEntry(0);
+			size.decrement();
+			unlock(current);
+			Object returnData = node.replaceEntry(index, successorKey, successorElement);
+			unlock(node);
+			return returnData;
+		}
+    }
+
+	/**
+	 * Write-locks the current root, retrying if it is replaced while we wait.
+	 *
+	 * @return the root, write-locked
+	 */
+	private ConcurrentTFNode lockRoot() {
+		while(true) {
+			ConcurrentTFNode root = treeRoot;
+			lock(root);
+			if(root == treeRoot) {
+				return root;
+			}
+			unlock(root);
+		}
+	}
+
+	private static void lock(ConcurrentTFNode node) {
+		node.getLock().asWriteLock().lock();
+	}
+
+	private static void unlock(ConcurrentTFNode node) {
+		node.getLock().asWriteLock().unlock();
+	}
+
+	/**
+	 * Finds the index of the first item that is greater than or equal to the
+	 * given key.
+	 *
+	 * @param node node to be searched
+	 * @param key key to find
+	 * @return index of first item greater than or equal to given key
+	 */
+	private int FFGTE(TFNode node, Object key) {
+		return nodeSearch.FFGTE(node, key, treeComp);
+	}
+
+	/**
+	 * Splits a full child around its middle item, which moves up into the
+	 * parent.  The caller holds the parent and child write locks.
+	 *
+	 * @param parent locked parent, which is not full
+	 * @param index index of the child in the parent
+	 * @return new right sibling of the child, write-locked
+	 */
+	private ConcurrentTFNode splitChild(ConcurrentTFNode parent, int index) {
+		ConcurrentTFNode child = parent.getChild(index);
+		ConcurrentTFNode sibling = new ConcurrentTFNode(maxItems);
+		lock(sibling);
+		int last = child.getNumItems() - 1;
+		int middle = child.getNumItems() / 2;
+
+		// move the items right of the middle item, with their children, into
+		// the new sibling
+		for(int i = middle + 1; i <= last; i++) {
+			sibling.addEntry(i - middle - 1, child.getKey(i), child.getElement(i));
+		}
+		for(int i = middle + 1; i <= last + 1; i++) {
+			sibling.setChild(i - middle - 1, child.getChild(i));
+			child.setChild(i, null);
+		}
+		for(int i = last; i > middle; i--) {
+			child.deleteEntry(i);
+		}
+		Object parentKey = child.getKey(middle);
+		Object parentElement = child.deleteEntry(middle);
+
+		parent.insertEntry(index, parentKey, parentElement);
+		parent.setChild(index, child);
+		parent.setChild(index + 1, sibling);
+		return sibling;
+	}
+
+	/**
+	 * Gives a minimal child one more item, by a transfer from a sibling that
+	 * can spare one or else by fusing it with a sibling.  The caller holds the
+	 * parent and child write locks; sibling locks are taken and released here.
+	 *
+	 * @param parent locked parent
+	 * @param index index of the child in the parent
+	 * @return the refilled node, write-locked; the child itself, or the left
+	 * sibling it was fused into
+	 */
+	private ConcurrentTFNode refillChild(ConcurrentTFNode parent, int index) {
+		ConcurrentTFNode child = parent.getChild(index);
+		ConcurrentTFNode left = null;
+		if(index > 0) {
+			left = parent.getChild(index - 1);
+			lock(left);
+			if(left.getNumItems() > minItems) {
+				leftTransfer(parent, index, left, child);
+				unlock(left);
+				return child;
+			}
+		}
+		if(index < parent.getNumItems()) {
+			ConcurrentTFNode right = parent.getChild(index + 1);
+			lock(right);
+			if(right.getNumItems() > minItems) {
+				rightTransfer(parent, index, child, right);
+			}else {
+				fuse(parent, index, child, right);
+			}
+			unlock(right);
+			if(left != null) {
+				unlock(left);
+			}
+			return child;
+		}
+		fuse(parent, index - 1, left, child);
+		unlock(child);
+		return left;
+	}
+
+	/**
+	 * Moves the last item of the left sibling up into the parent, and the
+	 * parent's separating item down to the front of the child.
+	 */
+	private void leftTransfer(ConcurrentTFNode parent, int index,
+			ConcurrentTFNode left, ConcurrentTFNode child) {
+		int last = left.getNumItems() - 1;
+		ConcurrentTFNode lastChild = left.getChild(last + 1);
+		left.setChild(last + 1, null);
+		Object lastKey = left.getKey(last);
+		Object lastElement = left.deleteEntry(last);
+
+		Object parentKey = parent.getKey(index - 1);
+		Object parentElement = parent.replaceEntry(index - 1, lastKey, lastElement);
+		child.insertEntry(0, parentKey, parentElement);
+		child.setChild(0, lastChild);
+	}
+
+	/**
+	 * Moves the first item of the right sibling up into the parent, and the
+	 * parent's separating item down to the end of the child.
+	 */
+	private void rightTransfer(ConcurrentTFNode parent, int index,
+			ConcurrentTFNode child, ConcurrentTFNode right) {
+		ConcurrentTFNode firstChild = right.getChild(0);
+		Object firstKey = right.getKey(0);
+		Object firstElement = right.removeEntry(0);
+
+		Object parentKey = parent.getKey(index);
+		Object parentElement = parent.replaceEntry(index, firstKey, firstElement);
+		child.insertEntry(child.getNumItems(), parentKey, parentElement);
+		child.setChild(child.getNumItems(), firstChild);
+	}
+
+	/**
+	 * Fuses the children either side of the parent's item at index, along
+	 * with that item, into the left one.  The right one is left out of the
+	 * tree; it is changed as well, so readers holding a stamp on it retry.
+	 */
+	private void fuse(ConcurrentTFNode parent, int index,
+			ConcurrentTFNode left, ConcurrentTFNode right) {
+		Object parentKey = parent.getKey(index);
+		Object parentElement = parent.removeEntry(index);
+		// removeEntry dropped the child at index, which was left, and shifted
+		// right into its slot; put left back in place of right
+		parent.setChild(index, left);
+
+		appendEntry(left, parentKey, parentElement, right.getChild(0));
+		for(int i = 0; i < right.getNumItems(); i++) {
+			appendEntry(left, right.getKey(i), right.getElement(i),
+					right.getChild(i + 1));
+		}
+		right.clear();
+	}
+
+	private static void appendEntry(TFNode node, Object key, Object element,
+			TFNode child) {
+		node.insertEntry(node.getNumItems(), key, element);
+		node.setChild(node.getNumItems(), child);
+	}
+
+    /**
+     * Checks the structure of the tree: items in order within and across
+     * nodes, every node but the root at least minimally full, no node over
+     * full, all leaves at the same depth, and an item count matching size.
+     * Only meaningful while no writer is active.
+     * @exception TwoFourTreeException describing the first problem found
+     */
+    public void checkTree() {
+        int[] leafDepth = {-1};
+        long count = checkTreeFromNode(treeRoot, 0, null, null, leafDepth);
+        if (count != size.sum()) {
+            throw new TwoFourTreeException("tree holds " + count + " items but size is " + size.sum());
+        }
+    }
+
+    private long checkTreeFromNode(ConcurrentTFNode start, int depth,
+            Object low, Object high, int[] leafDepth) {
+        int numItems = start.getNumItems();
+        if (numItems > maxItems || (start != treeRoot && numItems < minItems)) {
+            throw new TwoFourTreeException("node holds " + numItems + " items");
+        }
+        for (int i = 0; i < numItems; i++) {
+            Object key = start.getKey(i);
+            if ((low != null && treeComp.isLessThan(key, low))
+                    || (high != null && treeComp.isGreaterThan(key, high))
+                    || (i > 0 && treeComp.isLessThan(key, start.getKey(i - 1)))) {
+                throw new TwoFourTreeException("key out of order: " + key);
+            }
+        }
+
+        long count = numItems;
+        if (start.getChild(0) == null) {
+            if (leafDepth[0] == -1) {
+                leafDepth[0] = depth;
+            }
+            else if (leafDepth[0] != depth) {
+                throw new TwoFourTreeException("leaves at depths " + leafDepth[0] + " and " + depth);
+            }
+            return count;
+        }
+        for (int i = 0; i <= numItems; i++) {
+            ConcurrentTFNode child = start.getChild(i);
+            if (child == null) {
+                throw new TwoFourTreeException("mixed null and non-null children");
+            }
+            count += checkTreeFromNode(child, depth + 1,
+                    (i == 0) ? low : start.getKey(i - 1),
+                    (i == numItems) ? high : start.getKey(i),
+                    leafDepth);
+        }
+        return count;
+    }
+
+    /**
+     * Stress test: threads insert, remove and look up keys of their own at
+     * random while also reading the other threads' keys, then the tree is
+     * checked and emptied.  Prints throughput for each thread count.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = {1, 4, 16, 64};
+        int opsPerRound = 400000;
+        // the workers stop this often so the whole tree can be checked
+        final int checkInterval = 25000;
+        final int pinnedKeys = 1000;
+
+        for (int threads : threadCounts) {
+            final ConcurrentTwoFourTree myTree =
+                    new ConcurrentTwoFourTree(new IntegerComparator());
+            final int opsPerThread = opsPerRound / threads;
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final AtomicLong remaining = new AtomicLong();
+            final int[][] allCounts = new int[threads][];
+            // the workers and this thread meet at every checkpoint, once to
+            // stop and once to go on
+            final Phaser checkpoint = new Phaser(threads + 1);
+            Thread[] workers = new Thread[threads];
+
+            // negative keys are never touched by the workers, so a reader
+            // must always find them however the nodes around them move
+            for (int k = 1; k <= pinnedKeys; k++) {
+                myTree.insertElement(-k, -k);
+            }
+            final AtomicBoolean running = new AtomicBoolean(true);
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    Random rng = new Random(-1);
+                    try {
+                        while (running.get()) {
+                            int key = -1 - rng.nextInt(pinnedKeys);
+                            Object found = myTree.findElement(key);
+                            if (found == null || (Integer) found != key) {
+                                throw new TwoFourTreeException("pinned key " + key + " gave " + found);
+                            }
+                        }
+                    }
+                    catch (Throwable exc) {
+                        failure.compareAndSet(null, exc);
+                    }
+                }
+            });
+
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                final int numThreads = threads;
+                workers[t] = new Thread(new Runnable() {
+                    public void run() {
+                        // each thread owns the keys congruent to its id, so
+                        // it can check its own results exactly
+                        Random rng = new Random(id);
+                        int keysPerThread = 2000;
+                        int[] counts = new int[keysPerThread];
+                        allCounts[id] = counts;
+                        try {
+                            start.await();
+                            for (int i = 0; i < opsPerThread; i++) {
+                                if (i > 0 && i % checkInterval == 0) {
+                                    checkpoint.arriveAndAwaitAdvance();
+                                    checkpoint.arriveAndAwaitAdvance();
+                                }
+                                int slot = rng.nextInt(keysPerThread);
+                                int key = slot * numThreads + id;
+                                int op = rng.nextInt(10);
+                                if (op < 3) {
+                                    myTree.insertElement(key, key);
+                                    counts[slot]++;
+                                }
+                                else if (op < 6 && counts[slot] > 0) {
+                                    int out = (Integer) myTree.removeElement(key);
+                                    if (out != key) {
+                                        throw new TwoFourTreeException("wrong element removed: " + out + " ; " + key);
+                                    }
+                                    counts[slot]--;
+                                }
+                                else if (op < 8) {
+                                    Object found = myTree.findElement(key);
+                                    if ((found != null) != (counts[slot] > 0)) {
+                                        throw new TwoFourTreeException("wrong find result for " + key);
+                                    }
+                                }
+                                else {
+                                    myTree.findElement(rng.nextInt(keysPerThread * numThreads));
+                                }
+                            }
+                            long left = 0;
+                            for (int count : counts) {
+                                left += count;
+                            }
+                            remaining.addAndGet(left);
+                        }
+                        catch (Throwable exc) {
+                            failure.compareAndSet(null, exc);
+                        }
+                        finally {
+                            // a failed worker must not hold up the others
+                            checkpoint.arriveAndDeregister();
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+
+            long startTime = System.nanoTime();
+            reader.start();
+            start.countDown();
+            int checkpoints = (opsPerThread - 1) / checkInterval;
+            for (int c = 0; c < checkpoints && failure.get() == null; c++) {
+                // every worker is stopped between operations, while the
+                // reader goes on
+                checkpoint.arriveAndAwaitAdvance();
+                long expectedSize = pinnedKeys;
+                for (int[] counts : allCounts) {
+                    for (int count : counts) {
+                        expectedSize += count;
+                    }
+                }
+                try {
+                    myTree.checkTree();
+                    if (myTree.size() != expectedSize) {
+                        throw new TwoFourTreeException("size " + myTree.size() + " ; expected " + expectedSize);
+                    }
+                }
+                catch (RuntimeException exc) {
+                    failure.compareAndSet(null, exc);
+                }
+                checkpoint.arriveAndAwaitAdvance();
+            }
+            checkpoint.arriveAndDeregister();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - startTime;
+            running.set(false);
+            reader.join();
+            if (failure.get() != null) {
+                throw new TwoFourTreeException("main: " + threads + " threads failed: " + failure.get());
+            }
+
+            myTree.checkTree();
+            if (myTree.size() != remaining.get() + pinnedKeys) {
+                throw new TwoFourTreeException("main: size " + myTree.size() + " ; expected "
+                        + (remaining.get() + pinnedKeys));
+            }
+            System.out.println("threads " + threads + ": "
+                    + (long) (opsPerThread * (double) threads * 1e9 / elapsed) + " ops/s");
+        }
+        System.out.println("concurrent stress test done");
+
+        // a key stored with a null element is found by its key: the search
+        // stops at the first copy on the path, as findElement walks, and
+        // does not go on to a duplicate below it
+        ConcurrentTwoFourTree nulls = new ConcurrentTwoFourTree(new IntegerComparator());
+        // in random order, so that some null copies are lifted into
+        // internal nodes
+        Random order = new Random(3);
+        int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; i++) {
+            int j = order.nextInt(i + 1);
+            keys[i] = keys[j];
+            keys[j] = i;
+        }
+        for (int i : keys) {
+            nulls.insertElement(i, (i % 10 == 0) ? null : (Integer) i);
+        }
+        for (int i = 0; i < 1000; i += 10) {
+            nulls.insertElement(i, "duplicate");
+        }
+        int hidden = 0;
+        for (int i = 0; i < 1000; i += 10) {
+            Object expected = null;
+            ConcurrentTFNode node = nulls.treeRoot;
+            while (node != null) {
+                int index = nulls.FFGTE(node, i);
+                if (index != node.getNumItems() && nulls.treeComp.compare(node.getKey(index), i) == 0) {
+                    expected = node.getElement(index);
+                    break;
+                }
+                node = node.getChild(index);
+            }
+            if (expected == null) {
+                // the duplicate sits below the null copy
+                hidden++;
+            }
+            if (nulls.findElement(i) != expected) {
+                throw new TwoFourTreeException("main: key " + i + " gave " + nulls.findElement(i)
+                        + ", not " + expected);
+            }
+        }
+        if (hidden == 0) {
+            throw new TwoFourTreeException("main: no null element above its duplicate");
+        }
+        System.out.println("null elements done, " + hidden + " above a duplicate");
+    }
+}
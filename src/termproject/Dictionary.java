@@ -12,7 +12,7 @@ package termproject;
  * or unordered dictionary
  */
 
-public interface Dictionary {
+public interface Dictionary<K,V> {
 
     public int size();
     public boolean isEmpty();
@@ -22,14 +22,14 @@ public interface Dictionary {
     * @param key to be searched for
     * @return object corresponding to key; null if not found
     */
-    public Object findElement (Object key);
+    public V findElement (Object key);
 
     /**
     * Inserts provided element into the Dictionary
     * @param key of object to be inserted
     * @param element to be inserted
     */
-    public void insertElement (Object key, Object element);
+    public void insertElement (K key, V element);
 
     /**
     * Searches dictionary to determine if key is present, then
@@ -38,5 +38,5 @@ public interface Dictionary {
     * @return object corresponding to key
     * @exception ElementNotFoundException if the key is not in dictionary
     */
-    public Object removeElement (Object key) throws ElementNotFoundException;
-}
\ No newline at end of file
+    public V removeElement (Object key) throws ElementNotFoundException;
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package termproject;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A PageStore in direct ByteBuffers, memory outside the Java
+ * heap that lasts only as long as the store.  A PagedTwoFourTree on it
+ * keeps its nodes as pages addressed by page id rather than as objects, so
+ * a tree of any size adds only a handful of buffers to the heap, and the
+ * garbage collector has no nodes, items or child arrays to trace.
+ *
+ * Memory is taken in segments of many pages as the tree grows.  Pages are
+ * freed explicitly, to the store's free list, and close gives the segments
+ * back to the operating system at once rather than when the collector gets
+ * around to their buffers.  The layout of the header and free pages is
+ * AbstractPageStore's.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class DirectPageStore
+        extends AbstractPageStore {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_SEGMENT_BYTES = 4 << 20;
+
+    // Unsafe.invokeCleaner, where the runtime has it; null otherwise
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException exc) {
+            // before Java 9: the collector frees the buffers
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    public DirectPageStore() {
+        this (DEFAULT_PAGE_SIZE, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param pageSize page size; a power of two of at least 256
+     * @param segmentBytes memory to take from the operating system at a time
+     */
+    public DirectPageStore(int pageSize, int segmentBytes) {
+        super(pageSize, segmentBytes);
+        try {
+            openHeader(true);
+        }
+        catch (IOException exc) {
+            // newSegment does no I/O
+            throw new TwoFourTreeException(exc.getMessage());
+        }
+    }
+
+    /**
+     * Does nothing: the pages last only as long as the store.
+     */
+    public void sync() {
+    }
+
+    protected ByteBuffer newSegment(int index, long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new TwoFourTreeException("segment too big for a buffer: " + bytes);
+        }
+        // allocateDirect hands out zeroed memory
+        return ByteBuffer.allocateDirect((int) bytes);
+    }
+
+    /**
+     * Frees the segments at once where the runtime allows it.
+     */
+    protected void release(List<ByteBuffer> released) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer segment : released) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, segment);
+            }
+            catch (ReflectiveOperationException exc) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Self-test: the same items in a TwoFourTree and in a PagedTwoFourTree
+     * on a direct store, comparing the heap each needs and the time a full
+     * collection takes with each alive, then emptying the paged tree and
+     * closing the store.
+     */
+    public static void main(String[] args) throws IOException {
+        final int TEST_SIZE = 2000000;
+        Random rng = new Random(3);
+        int[] keys = new int[TEST_SIZE];
+        for (int i = 0; i < TEST_SIZE; i++) {
+            keys[i] = rng.nextInt();
+        }
+
+        long baseHeap = usedHeap();
+        TwoFourTree<Integer,Integer> heapTree = new TwoFourTree<Integer,Integer>(new IntegerComparator(), 64);
+        for (int i = 0; i < TEST_SIZE; i++) {
+            heapTree.insertElement(keys[i], i);
+        }
+        long heapTreeBytes = usedHeap() - baseHeap;
+        long gcTime = timeFullGc();
+        System.out.println("TwoFourTree: " + heapTreeBytes / (1 << 20) + " MB of heap, full GC "
+                + gcTime / 1000000 + " ms");
+        heapTree = null;
+
+        baseHeap = usedHeap();
+        DirectPageStore store = new DirectPageStore();
+        PagedTwoFourTree pagedTree = new PagedTwoFourTree(store, new IntegerCodec());
+        for (int i = 0; i < TEST_SIZE; i++) {
+            pagedTree.insertElement((long) keys[i], Integer.valueOf(i));
+        }
+        long pagedTreeBytes = usedHeap() - baseHeap;
+        gcTime = timeFullGc();
+        System.out.println("PagedTwoFourTree on DirectPageStore: " + pagedTreeBytes / (1 << 20)
+                + " MB of heap, " + store.getReservedBytes() / (1 << 20) + " MB off heap, full GC "
+                + gcTime / 1000000 + " ms");
+        pagedTree.checkTree();
+        for (int i = 0; i < TEST_SIZE; i += 1000) {
+            Object element = pagedTree.findElement((long) keys[i]);
+            if (element == null) {
+                throw new TwoFourTreeException("main: lost key " + keys[i]);
+            }
+        }
+        System.out.println("test 1: fill done");
+
+        for (int i = 0; i < TEST_SIZE; i++) {
+            pagedTree.removeElement((long) keys[i]);
+        }
+        pagedTree.checkTree();
+        if (!pagedTree.isEmpty() || store.getPagesInUse() != 2) {
+            throw new TwoFourTreeException("main: " + store.getPagesInUse() + " pages in use when empty");
+        }
+        store.close();
+        store.close();
+        System.out.println("test 2: empty and close done");
+    }
+
+    private static long usedHeap() {
+        timeFullGc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long timeFullGc() {
+        long startTime = System.nanoTime();
+        System.gc();
+        return System.nanoTime() - startTime;
+    }
+}
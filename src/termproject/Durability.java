@@ -0,0 +1,32 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: How hard a WriteAheadLog works to keep a logged change
+ * across a crash before the change returns.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public enum Durability {
+
+    /**
+     * Every change is forced to disk before it returns.  Changes made at the
+     * same time by several threads share one force (group commit).
+     */
+    SYNC,
+
+    /**
+     * Changes return at once and are forced to disk together by a
+     * background thread every few milliseconds; a crash loses at most the
+     * changes of the last interval.
+     */
+    PERIODIC,
+
+    /**
+     * Changes are handed to the operating system in large writes and never
+     * forced; a crash of the machine, though not of the process, can lose
+     * any of them.
+     */
+    NONE
+}
@@ -0,0 +1,162 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: The basic node for an int-keyed 2-4 tree.  Keys are kept in
+ * an int array next to the element array, so no key is ever boxed and no
+ * Item is allocated per entry.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class IntTFNode {
+
+    private static final int MAX_ITEMS = 3;
+
+    private int numItems = 0;
+    private IntTFNode nodeParent;
+    // slot of this node in its parent's child array, kept current by the
+    // parent's setChild, insertEntry and removeEntry
+    private int parentIndex;
+    private IntTFNode[] nodeChildren;
+    private int[] nodeKeys;
+    private Object[] nodeElements;
+
+    public IntTFNode() {
+            // make them one bigger than needed, so can handle oversize nodes
+            // during inserts
+        nodeChildren = new IntTFNode[MAX_ITEMS+2];
+        nodeKeys = new int[MAX_ITEMS+1];
+        nodeElements = new Object[MAX_ITEMS+1];
+    }
+
+    public int getNumItems () {
+        return numItems;
+    }
+
+    public int getMaxItems() {
+        return MAX_ITEMS;
+    }
+
+    public IntTFNode getParent() {
+        return nodeParent;
+    }
+    public void setParent (IntTFNode parent) {
+        nodeParent = parent;
+    }
+    public int getParentIndex() {
+        return parentIndex;
+    }
+    public int getKey(int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        return nodeKeys[index];
+    }
+    public Object getElement(int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        return nodeElements[index];
+    }
+        // adds, but does not extend array; so it overwrites anything there
+    public void addEntry (int index, int key, Object element) {
+            // always add at end+1; check that you are within array
+        if ( (index < 0) || (index > numItems) || (index > MAX_ITEMS) )
+            throw new TFNodeException();
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
+        numItems++;
+    }
+        // this function inserts an item into the node, and adjusts into child
+        // pointers to add the proper corresponding pointer
+    public void insertEntry (int index, int key, Object element) {
+        if ( (index < 0) || (index > numItems) || (index > MAX_ITEMS) )
+            throw new TFNodeException();
+            // adjust items
+        for (int ind=numItems; ind > index; ind--) {
+            nodeKeys[ind] = nodeKeys[ind-1];
+            nodeElements[ind] = nodeElements[ind-1];
+        }
+            // insert new data into hole made
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
+            // adjust children pointers the same way TFNode does; whoever
+            // called this function will fix one of them later
+        for (int ind=numItems+1; ind > index; ind--) {
+            moveChild(ind-1, ind);
+        }
+
+        numItems++;
+    }
+
+        // this method removes item, and shrinks array; returns the element
+    public Object removeEntry (int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        Object removedElement = nodeElements[index];
+
+        for (int ind=index; ind < numItems-1; ind++) {
+            nodeKeys[ind] = nodeKeys[ind+1];
+            nodeElements[ind] = nodeElements[ind+1];
+        }
+        nodeElements[numItems-1] = null;
+            // fix children pointers also; the child with the same index as
+            // the removed item is dropped
+        for (int ind=index; ind < numItems; ind++) {
+            moveChild(ind+1, ind);
+        }
+        nodeChildren[numItems] = null;
+        numItems--;
+        return removedElement;
+    }
+
+        // this method removes item, but does not shrink array
+    public Object deleteEntry (int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        Object removedElement = nodeElements[index];
+        nodeElements[index] = null;
+
+        numItems--;
+        return removedElement;
+    }
+        // replaces item at index, returning the old element
+    public Object replaceEntry (int index, int key, Object element) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        Object returnElement = nodeElements[index];
+
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
+        return returnElement;
+    }
+
+    public IntTFNode getChild (int index) {
+        if ( (index < 0) || (index > (MAX_ITEMS+1)) )
+            throw new TFNodeException();
+        return nodeChildren[index];
+    }
+    public void setChild (int index, IntTFNode child) {
+        if ( (index < 0) || (index > (MAX_ITEMS+1)) )
+            throw new TFNodeException();
+        IntTFNode old = nodeChildren[index];
+            // after an insertEntry shift the old child also sits in the slot
+            // next to this one; if it was recorded here, point it at that slot
+        if ( (old != null) && (old != child) && (old.parentIndex == index) ) {
+            if ( (index > 0) && (nodeChildren[index-1] == old) )
+                old.parentIndex = index-1;
+            else if ( (index < nodeChildren.length-1) && (nodeChildren[index+1] == old) )
+                old.parentIndex = index+1;
+        }
+        nodeChildren[index] = child;
+        if (child != null)
+            child.parentIndex = index;
+    }
+
+        // moves a child between slots during a shift, keeping its index
+    private void moveChild (int from, int to) {
+        IntTFNode child = nodeChildren[from];
+        nodeChildren[to] = child;
+        if (child != null)
+            child.parentIndex = to;
+    }
+}
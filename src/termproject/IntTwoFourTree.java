@@ -0,0 +1,574 @@
+package termproject;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A 2-4 tree specialized for int keys.  Keys live in int arrays
+ * inside IntTFNode, so searches, inserts and removes through the int methods
+ * never box a key or allocate an Item, and compare keys with a plain &lt;.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class IntTwoFourTree
+        implements Dictionary<Object,Object> {
+
+    private static final int MAX_ITEMS = 3;
+    // returned by lookup for a missing key, since null may be an element
+    private static final Object NOT_FOUND = new Object();
+
+    private int size = 0;
+    private IntTFNode treeRoot = null;
+
+    public IntTwoFourTree() {
+    }
+
+    private IntTFNode root() {
+        return treeRoot;
+    }
+
+	/**
+	 * Searches the tree for a node containing the given key.
+	 *
+	 * @param key int to search for
+	 * @return node which contains key, or insertion point for this key
+	 * @throws TwoFourTreeException if root is null
+	 */
+	private IntTFNode search(int key) throws TwoFourTreeException {
+		IntTFNode current = treeRoot;
+		IntTFNode parent = null;
+		if(treeRoot == null) {
+			throw new TwoFourTreeException("root was null");
+		}
+
+		// loop until we have reached the child of an external node, or until
+		// we find the key
+		while(current != null) {
+			int index = FFGTE(current, key);
+
+			// ensure that the index given is not out of bounds
+			if(index != current.getNumItems()) {
+				if(current.getKey(index) == key) {
+					break;
+				}
+			}
+
+			parent = current;
+			current = current.getChild(index);
+		}
+
+		// if key was not found, we know we are at an external node, so we must
+		// return that node rather than its null "child"
+		if(current == null) {
+			return parent;
+		}else {
+			return current;
+		}
+	}
+
+	/**
+	 * Finds the index of the first item that is greater than or equal to the
+	 * given key.
+	 *
+	 * @param node IntTFNode to be searched
+	 * @param key key to find
+	 * @return index of first item greater than or equal to given key
+	 */
+	private int FFGTE(IntTFNode node, int key) {
+		// the keys are sorted, so the answer is the number of keys less than
+		// key; counting them needs no data-dependent branch
+		int count = 0;
+		for(int i = 0; i < node.getNumItems(); i++) {
+			count += (node.getKey(i) < key) ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the index of the given node in its parent.  The node keeps its
+	 * slot up to date as the parent changes, so no scan is needed.
+	 * 
+	 * @param node the node to be found in the parent
+	 * @return index of node in its parent
+	 */
+	private int WCIT(IntTFNode node) {
+		return node.getParentIndex();
+	}
+
+	/**
+	 * Finds the in-order successor of the given node-key combination.
+	 *
+	 * @param node the node to start at
+	 * @param index the index of the key to follow
+	 * @return the in-order successor node
+	 */
+	private IntTFNode getInOrderSuccessor(IntTFNode node, int index) {
+		IntTFNode parent = null;
+		IntTFNode current = node.getChild(index + 1);
+
+		while(current != null) {
+			parent = current;
+			current = current.getChild(0);
+		}
+
+		return parent;
+	}
+
+	/**
+	 * Checks for and fixes node overflow.
+	 *
+	 * @param node the node to check for overflow
+	 */
+	private void fixOverflow(IntTFNode node) {
+		if(node.getNumItems() <= MAX_ITEMS) {
+			return;
+		}
+
+		IntTFNode parent = node.getParent();
+
+		// special case when root overflows (we must increase height of tree)
+		if(parent == null) {
+			parent = new IntTFNode();
+			parent.setChild(0, node);
+			node.setParent(parent);
+			treeRoot = parent;
+		}
+
+		int index = WCIT(node);
+
+		// preserves data that we want to move around
+		IntTFNode left = node.getChild(3);
+		node.setChild(3, null);
+		IntTFNode right = node.getChild(4);
+		node.setChild(4, null);
+		int siblingKey = node.getKey(3);
+		Object siblingElement = node.deleteEntry(3);
+		int parentKey = node.getKey(2);
+		Object parentElement = node.deleteEntry(2);
+
+		// creates and hooks up new sibling
+		IntTFNode sibling = new IntTFNode();
+		sibling.setParent(parent);
+		sibling.addEntry(0, siblingKey, siblingElement);
+		sibling.setChild(0, left);
+		sibling.setChild(1, right);
+		if(left != null) {
+			left.setParent(sibling);
+			right.setParent(sibling);
+		}
+
+		// connects children to parents
+		parent.insertEntry(index, parentKey, parentElement);
+		parent.setChild(index, node);
+		parent.setChild(index + 1, sibling);
+
+		fixOverflow(parent);
+	}
+
+	/**
+	 * Checks for and fixes node underflow.
+	 *
+	 * @param node the node to check for underflow
+	 */
+	private void fixUnderflow(IntTFNode node) {
+		if(node.getNumItems() < 1) {
+
+			// special case where root is underflowed
+			if(node == treeRoot) {
+				treeRoot = node.getChild(0);
+				if(treeRoot != null) {
+					treeRoot.setParent(null);
+				}
+			}
+			else if(isPossibleLTrans(node)) {
+				leftTransfer(node);
+			}
+			else if(isPossibleRTrans(node)) {
+				rightTransfer(node);
+			}
+			else if(isPossibleLFusion(node)) {
+				leftFusion(node);
+			}
+			else {
+				rightFusion(node);
+			}
+		}
+	}
+
+	/**
+	 * Checks if left transfer is possible.
+	 *
+	 * @param node node to check for possible transfer
+	 * @return true if possible
+	 */
+	private boolean isPossibleLTrans(IntTFNode node) {
+		int index = WCIT(node);
+		if(index > 0) {
+			return node.getParent().getChild(index - 1).getNumItems() >= 2;
+		}else {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if right transfer is possible.
+	 *
+	 * @param node node to check for possible transfer
+	 * @return true if possible
+	 */
+	private boolean isPossibleRTrans(IntTFNode node) {
+		int index = WCIT(node);
+		IntTFNode parent = node.getParent();
+		if(index < parent.getNumItems()) {
+			return parent.getChild(index + 1).getNumItems() >= 2;
+		}else {
+			return false;
+		}
+	}
+
+	/**
+	 * Performs a left transfer operation.
+	 *
+	 * @param node underflowed node to perform on
+	 */
+	private void leftTransfer(IntTFNode node) {
+		int index = WCIT(node);
+		IntTFNode parent = node.getParent();
+		IntTFNode sibling = parent.getChild(index - 1);
+
+		// preserving data that would otherwise be lost
+		IntTFNode lastChild = sibling.getChild(sibling.getNumItems());
+		sibling.setChild(sibling.getNumItems(), null);
+		int lastKey = sibling.getKey(sibling.getNumItems() - 1);
+		Object lastElement = sibling.deleteEntry(sibling.getNumItems() - 1);
+
+		// swap old sibling item with parent and add parent item to underflowed
+		// node
+		int parentKey = parent.getKey(index - 1);
+		Object parentElement = parent.replaceEntry(index - 1, lastKey, lastElement);
+		node.addEntry(0, parentKey, parentElement);
+
+		// move old child 0 to child position 1, then add child from sibling as
+		// child 0
+		node.setChild(1, node.getChild(0));
+		node.setChild(0, lastChild);
+		if(lastChild != null) {
+			lastChild.setParent(node);
+		}
+	}
+
+	/**
+	 * Performs a right transfer operation.
+	 *
+	 * @param node underflowed node to perform on
+	 */
+	private void rightTransfer(IntTFNode node) {
+		int index = WCIT(node);
+		IntTFNode parent = node.getParent();
+		IntTFNode sibling = parent.getChild(index + 1);
+
+		// preserving data that would otherwise be lost
+		IntTFNode firstChild = sibling.getChild(0);
+		int firstKey = sibling.getKey(0);
+		Object firstElement = sibling.removeEntry(0);
+
+		// swap old sibling item with parent and add parent item to underflowed
+		// node
+		int parentKey = parent.getKey(index);
+		Object parentElement = parent.replaceEntry(index, firstKey, firstElement);
+		node.addEntry(0, parentKey, parentElement);
+
+		// insert child from sibling as 2nd(index 1) child
+		node.setChild(1, firstChild);
+		if(firstChild != null) {
+			firstChild.setParent(node);
+		}
+	}
+
+	/**
+	 * Checks if left fusion operation is possible
+	 *
+	 * @param node node to check for possible fusion
+	 * @return true if possible
+	 */
+	private boolean isPossibleLFusion(IntTFNode node) {
+		return WCIT(node) > 0;
+	}
+
+	/**
+	 * Performs a left fusion operation
+	 *
+	 * @param node underflowed node to perform fusion on
+	 */
+	private void leftFusion(IntTFNode node) {
+		int index = WCIT(node);
+		IntTFNode parent = node.getParent();
+
+		// delete underflowed node
+		parent.setChild(index, null);
+
+		// preserving data
+		IntTFNode sibling = parent.getChild(index - 1);
+		int parentKey = parent.getKey(index - 1);
+		Object parentElement = parent.removeEntry(index - 1);
+		IntTFNode child = node.getChild(0);
+
+		// insert data in sibling
+		sibling.insertEntry(sibling.getNumItems(), parentKey, parentElement);
+		sibling.setChild(sibling.getNumItems(), child);
+		if(child != null) {
+			child.setParent(sibling);
+		}
+
+		// fix parent pointer
+		parent.setChild(index - 1, sibling);
+
+		fixUnderflow(parent);
+	}
+
+	/**
+	 * Performs a right fusion operation
+	 *
+	 * @param node underflowed node to perform fusion on
+	 */
+	private void rightFusion(IntTFNode node) {
+		int index = WCIT(node);
+		IntTFNode parent = node.getParent();
+
+		// preserving data
+		int parentKey = parent.getKey(index);
+		Object parentElement = parent.removeEntry(index);
+		IntTFNode child = node.getChild(0);
+		IntTFNode sibling = parent.getChild(index);
+
+		// insert data in sibling
+		sibling.insertEntry(0, parentKey, parentElement);
+		sibling.setChild(0, child);
+		if(child != null) {
+			child.setParent(sibling);
+		}
+
+		fixUnderflow(parent);
+	}
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present
+     * @param key to be searched for
+     * @return object corresponding to key; null if not found, or if the
+     * tree is empty
+     */
+    public Object findElement(int key) {
+		return lookup(key, null);
+    }
+
+    /**
+     * @param key to be searched for
+     * @param defaultElement what to return if the key is not in the tree
+     * @return object corresponding to key, or defaultElement if not found
+     */
+    public Object getOrDefault(int key, Object defaultElement) {
+		Object element = lookup(key, NOT_FOUND);
+		if(element == NOT_FOUND) {
+			return defaultElement;
+		}
+		return element;
+    }
+
+    /**
+     * @param key to be searched for
+     * @return true if an item with the key is in the tree
+     */
+    public boolean containsKey(int key) {
+		return lookup(key, NOT_FOUND) != NOT_FOUND;
+    }
+
+	// returns the element from the first node on the path that holds key,
+	// or missing once the path runs out; an empty tree is just a miss
+	private Object lookup(int key, Object missing) {
+		IntTFNode current = treeRoot;
+		while(current != null) {
+			int index = FFGTE(current, key);
+			if(index != current.getNumItems() && current.getKey(index) == key) {
+				return current.getElement(index);
+			}
+			current = current.getChild(index);
+		}
+		return missing;
+	}
+
+    /**
+     * Inserts provided element into the Dictionary
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(int key, Object element) {
+		if(treeRoot == null) {
+			treeRoot = new IntTFNode();
+		}
+
+		IntTFNode node = search(key);
+		int index = FFGTE(node, key);
+		// internal node that contains a duplicate; insert into successor
+		if(index != node.getNumItems() && node.getChild(0) != null) {
+			node = getInOrderSuccessor(node, index);
+			index = 0;
+		}
+		node.insertEntry(index, key, element);
+		size++;
+
+		fixOverflow(node);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then
+     * removes and returns corresponding object
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public Object removeElement(int key) throws ElementNotFoundException {
+		IntTFNode node = search(key);
+		int index = FFGTE(node, key);
+
+		if(index == node.getNumItems() || node.getKey(index) != key) {
+			throw new ElementNotFoundException("key is not in tree: " + key);
+		}
+
+		Object returnData;
+		// if we are at an external node, simply remove data from node
+		if(node.getChild(0) == null) {
+			returnData = node.removeEntry(index);
+		// else, we are at an internal node, we must replace data with in-order
+		// successor
+		}else {
+			IntTFNode successor = getInOrderSuccessor(node, index);
+			int successorKey = successor.getKey(0);
+			Object successorElement = successor.removeEntry(0);
+			returnData = node.replaceEntry(index, successorKey, successorElement);
+			node = successor;
+		}
+		size--;
+
+		fixUnderflow(node);
+		return returnData;
+    }
+
+    public Object findElement(Object key) {
+        return findElement(toInt(key));
+    }
+
+    public void insertElement(Object key, Object element) {
+        insertElement(toInt(key), element);
+    }
+
+    public Object removeElement(Object key) throws ElementNotFoundException {
+        return removeElement(toInt(key));
+    }
+
+    private static int toInt(Object key) {
+        try {
+            return ((Integer) key).intValue();
+        }
+        catch (ClassCastException exc) {
+            throw new InvalidIntegerException ("Object not an integer");
+        }
+    }
+
+    public static void main(String[] args) {
+        IntTwoFourTree myTree = new IntTwoFourTree();
+        int testSize = 10000;
+
+		Random rng = new Random();
+		Queue<Integer> nums = new LinkedList<Integer>();
+        for (int i = 0; i < testSize; i++) {
+			int j = rng.nextInt(testSize / 10);
+			nums.add(j);
+            myTree.insertElement(j, (Integer) j);
+        }
+        for (int i = testSize - 1; i >= 0; i--) {
+			int j = nums.remove();
+            int out = (Integer) myTree.removeElement(j);
+            if (out != j) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + j);
+            }
+        }
+        System.out.println("test 1: random done");
+		myTree.printAllElements();
+
+        testSize = 1000;
+        for (int i = 0; i < testSize; i++) {
+            myTree.insertElement(i, (Integer) i);
+        }
+        for (int i = 0; i < testSize; i++) {
+            int out = (Integer) myTree.removeElement(i);
+            if (out != i) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
+            }
+        }
+        System.out.println("test 2: sorted order remove done");
+		myTree.printAllElements();
+
+        if (myTree.findElement(3) != null || myTree.containsKey(3)
+                || myTree.getOrDefault(3, "none") != "none") {
+            throw new TwoFourTreeException("main: empty tree lookup found an item");
+        }
+        for (int i = 0; i < testSize; i++) {
+            myTree.insertElement(2 * i, (i % 10 == 0) ? null : (Integer) i);
+        }
+        for (int i = 0; i < 2 * testSize; i++) {
+            boolean present = (i % 2 == 0);
+            Object element = (!present || i % 20 == 0) ? null : (Integer) (i / 2);
+            if (myTree.containsKey(i) != present
+                    || (element == null ? myTree.findElement(i) != null : !element.equals(myTree.findElement(i)))
+                    || (!present && myTree.getOrDefault(i, "none") != "none")) {
+                throw new TwoFourTreeException("main: wrong lookup of " + i);
+            }
+        }
+        System.out.println("test 3: single-pass lookups done");
+    }
+
+    public void printAllElements() {
+        int indent = 0;
+        if (root() == null || root().getNumItems() == 0) {
+            System.out.println("The tree is empty");
+        }
+        else {
+            printTree(root(), indent);
+        }
+		System.out.println("");
+    }
+
+    public void printTree(IntTFNode start, int indent) {
+        if (start == null) {
+            return;
+        }
+        for (int i = 0; i < indent; i++) {
+            System.out.print(" ");
+        }
+        printTFNode(start);
+        indent += 4;
+        int numChildren = start.getNumItems() + 1;
+        for (int i = 0; i < numChildren; i++) {
+            printTree(start.getChild(i), indent);
+        }
+    }
+
+    public void printTFNode(IntTFNode node) {
+        int numItems = node.getNumItems();
+        for (int i = 0; i < numItems; i++) {
+            System.out.print(node.getKey(i) + " ");
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,45 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Encodes Integers as four big-endian bytes.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class IntegerCodec
+        implements IntegralCodec {
+
+    public int encodedSize(Object value) {
+        toLong(value);
+        return 4;
+    }
+
+    public void encode(Object value, ByteBuffer out) {
+        try {
+            out.putInt(((Integer) value).intValue());
+        }
+        catch (ClassCastException exc) {
+            throw new InvalidIntegerException("Object not an integer");
+        }
+    }
+
+    public Object decode(ByteBuffer in) {
+        return in.getInt();
+    }
+
+    public long toLong(Object value) {
+        try {
+            return ((Integer) value).intValue();
+        }
+        catch (ClassCastException exc) {
+            throw new InvalidIntegerException("Object not an integer");
+        }
+    }
+
+    public Object fromLong(long value) {
+        return (int) value;
+    }
+}
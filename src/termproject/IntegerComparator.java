@@ -44,6 +44,15 @@ public class IntegerComparator implements Comparator {
         return ( (! isLessThan (obj1, obj2)) && (! isLessThan (obj2, obj1)) );
     }
 
+    public int compare (Object obj1, Object obj2) {
+        try {
+            return Integer.compare(((Integer) obj1).intValue(), ((Integer) obj2).intValue());
+        }
+        catch (ClassCastException exc) {
+            throw new InvalidIntegerException ("Object not an integer");
+        }
+    }
+
     public boolean isComparable (Object obj) {
         try {
             Integer myInt = (Integer) obj;
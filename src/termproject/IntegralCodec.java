@@ -0,0 +1,26 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A codec for keys that are whole numbers.  Knowing the
+ * number lets a TreeSnapshot store each key as a varint of its difference
+ * from the one before, which for sorted keys is usually a byte or two.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface IntegralCodec
+        extends Codec {
+
+    /**
+     * @param value value this codec encodes
+     * @return the value as a long
+     */
+    public long toLong (Object value);
+
+    /**
+     * @param value long returned by toLong
+     * @return the value it came from
+     */
+    public Object fromLong (long value);
+}
@@ -0,0 +1,24 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Scans the items of a node from the left.  Cheapest for the
+ * three-item nodes of a 2-4 tree, where a binary search saves nothing.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class LinearNodeSearch implements NodeSearch {
+
+    public int FFGTE (TFNode node, Object key, Comparator comp) {
+		int i;
+		// loop through item array, comparing each item until we find first item
+		// greater than or equal to key
+		for(i = 0; i < node.getNumItems(); i++) {
+			if(comp.compare(node.getKey(i), key) >= 0) {
+				break;
+			}
+		}
+		return i;
+    }
+}
@@ -0,0 +1,80 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A Dictionary whose inserts and removes are recorded in a
+ * WriteAheadLog, so it can be rebuilt after a restart by replaying the log
+ * into the last snapshot.  Changes are applied and logged in the same
+ * order under the dictionary's lock, then wait for the log's durability
+ * outside it, so many threads can share each force of the log.  A remove
+ * of a key that is not there is not logged.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class LoggedDictionary<K,V>
+        implements Dictionary<K,V> {
+
+    private final Dictionary<K,V> dictionary;
+    private final WriteAheadLog log;
+
+    /**
+     * @param dictionary dictionary holding what the log has recorded so far,
+     * usually loaded from a snapshot and replayed from the log
+     * @param log log to record changes in
+     */
+    public LoggedDictionary(Dictionary<K,V> dictionary, WriteAheadLog log) {
+        this.dictionary = dictionary;
+        this.log = log;
+    }
+
+    public synchronized int size() {
+        return dictionary.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    public synchronized V findElement(Object key) {
+        return dictionary.findElement(key);
+    }
+
+    /**
+     * Inserts provided element into the Dictionary, returning once the log
+     * has it as durably as its Durability promises
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(K key, V element) {
+        long sequence;
+        synchronized (this) {
+            // the codecs are checked first, so that a key or element they
+            // reject changes nothing, and the insert is logged only once the
+            // dictionary has taken it
+            log.checkInsert(key, element);
+            dictionary.insertElement(key, element);
+            sequence = log.logInsert(key, element);
+        }
+        log.commit(sequence);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then removes and
+     * returns corresponding object, returning once the log has the remove
+     * as durably as its Durability promises
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public V removeElement(Object key) throws ElementNotFoundException {
+        long sequence;
+        V element;
+        synchronized (this) {
+            element = dictionary.removeElement(key);
+            sequence = log.logRemove(key);
+        }
+        log.commit(sequence);
+        return element;
+    }
+}
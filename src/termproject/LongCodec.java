@@ -0,0 +1,40 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Encodes Longs as eight big-endian bytes.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class LongCodec
+        implements IntegralCodec {
+
+    public int encodedSize(Object value) {
+        toLong(value);
+        return 8;
+    }
+
+    public void encode(Object value, ByteBuffer out) {
+        out.putLong(toLong(value));
+    }
+
+    public Object decode(ByteBuffer in) {
+        return in.getLong();
+    }
+
+    public long toLong(Object value) {
+        try {
+            return ((Long) value).longValue();
+        }
+        catch (ClassCastException exc) {
+            throw new InvalidIntegerException("Object not a long");
+        }
+    }
+
+    public Object fromLong(long value) {
+        return value;
+    }
+}
@@ -0,0 +1,79 @@
+package termproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A PageStore kept in a file and memory-mapped with
+ * FileChannel.map.  The file is mapped in segments of many pages, and a new
+ * segment is mapped, growing the file, whenever the pages in use outgrow the
+ * last one.  Pages are read and written in place in the mapping, so the
+ * operating system pages the data in and out and reopening the file costs
+ * no more than mapping it.  The layout of the header and free pages is
+ * AbstractPageStore's.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class MappedPageStore
+        extends AbstractPageStore {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int SEGMENT_BYTES = 16 << 20;
+
+    private final FileChannel channel;
+
+    /**
+     * Opens a store file, creating it with the default page size if it does
+     * not exist.
+     * @param file file holding the store
+     */
+    public MappedPageStore(File file) throws IOException {
+        this (file, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Opens a store file, creating it if it does not exist.
+     * @param file file holding the store
+     * @param pageSize page size for a new file; must match an existing one
+     * @exception TwoFourTreeException if the file is not a page store or has
+     * another page size
+     */
+    public MappedPageStore(File file, int pageSize) throws IOException {
+        super(pageSize, SEGMENT_BYTES);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            openHeader(channel.size() == 0);
+        }
+        catch (TwoFourTreeException exc) {
+            channel.close();
+            throw new TwoFourTreeException(file + ": " + exc.getMessage());
+        }
+    }
+
+    public void sync() throws IOException {
+        for (ByteBuffer segment : getSegments()) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    /**
+     * Closes the file.  The mappings themselves are released by the garbage
+     * collector.
+     */
+    protected void release(List<ByteBuffer> released) throws IOException {
+        channel.close();
+    }
+
+        // maps the next segment, which grows the file to cover it
+    protected ByteBuffer newSegment(int index, long bytes) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, index * bytes, bytes);
+    }
+}
@@ -0,0 +1,131 @@
+package termproject;
+
+import java.util.Arrays;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A list of inserts and removes to hand to a TwoFourTree in
+ * one go with applyBatch.  The tree applies them in key order, so
+ * neighbouring keys share the walk down the tree; mutations of equal keys
+ * keep the order in which they were added.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class MutationBatch {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] batchKeys;
+    private Object[] batchElements;
+    private boolean[] batchRemoves;
+    private int numMutations = 0;
+
+    public MutationBatch() {
+        this (DEFAULT_CAPACITY);
+    }
+
+    public MutationBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        batchKeys = new Object[capacity];
+        batchElements = new Object[capacity];
+        batchRemoves = new boolean[capacity];
+    }
+
+    /**
+     * Adds an insert to the batch
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insert(Object key, Object element) {
+        add(key, element, false);
+    }
+
+    /**
+     * Adds a remove to the batch.  Removing a key that is not in the tree
+     * when the batch reaches it is skipped, not an error.
+     * @param key of data to be removed
+     */
+    public void remove(Object key) {
+        add(key, null, true);
+    }
+
+    public int size() {
+        return numMutations;
+    }
+
+    public boolean isEmpty() {
+        return (numMutations == 0);
+    }
+
+    /**
+     * Empties the batch so it can be filled again.
+     */
+    public void clear() {
+        for (int ind=0; ind < numMutations; ind++) {
+            batchKeys[ind] = null;
+            batchElements[ind] = null;
+        }
+        numMutations = 0;
+    }
+
+    Object getKey(int index) {
+        return batchKeys[index];
+    }
+
+    Object getElement(int index) {
+        return batchElements[index];
+    }
+
+    boolean isRemove(int index) {
+        return batchRemoves[index];
+    }
+
+    /**
+     * Orders the mutations by key with a stable merge sort, leaving the
+     * batch itself as it is.
+     * @param comp comparator for keys
+     * @return indexes of the mutations in key order
+     */
+    int[] sortedOrder(Comparator comp) {
+        int[] order = new int[numMutations];
+        for (int ind=0; ind < numMutations; ind++) {
+            order[ind] = ind;
+        }
+        int[] merged = new int[numMutations];
+        for (int width=1; width < numMutations; width *= 2) {
+            for (int low=0; low < numMutations; low += 2*width) {
+                int mid = Math.min(low + width, numMutations);
+                int high = Math.min(low + 2*width, numMutations);
+                int left = low;
+                int right = mid;
+                for (int out=low; out < high; out++) {
+                    // take from the right run only if strictly smaller, so
+                    // equal keys stay in the order they were added
+                    if ( (right < high) && ( (left == mid)
+                            || comp.compare(batchKeys[order[right]], batchKeys[order[left]]) < 0 ) )
+                        merged[out] = order[right++];
+                    else
+                        merged[out] = order[left++];
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return order;
+    }
+
+    private void add(Object key, Object element, boolean remove) {
+        if (numMutations == batchKeys.length) {
+            int capacity = 2 * numMutations;
+            batchKeys = Arrays.copyOf(batchKeys, capacity);
+            batchElements = Arrays.copyOf(batchElements, capacity);
+            batchRemoves = Arrays.copyOf(batchRemoves, capacity);
+        }
+        batchKeys[numMutations] = key;
+        batchElements[numMutations] = element;
+        batchRemoves[numMutations] = remove;
+        numMutations++;
+    }
+}
@@ -0,0 +1,24 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Strategy for locating a key inside a single TFNode.  The
+ * tree picks one from its node width and key type, and another can be
+ * plugged in with TwoFourTree.setNodeSearch.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface NodeSearch {
+
+    /**
+     * Finds the index of the first item that is greater than or equal to the
+     * given key.
+     * @param node TFNode to be searched; its keys are in sorted order
+     * @param key key to find
+     * @param comp comparator the keys are ordered by
+     * @return index of first item greater than or equal to given key, or the
+     * number of items if there is none
+     */
+    public int FFGTE (TFNode node, Object key, Comparator comp);
+}
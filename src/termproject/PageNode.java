@@ -0,0 +1,128 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A TFNode laid out in a PageStore page, for PagedTwoFourTree.
+ * The page holds the item count, then the long keys, then a long reference
+ * to each item's element, then the int page ids of the children, where 0
+ * means no child.  The methods follow TFNode's, and every read and write goes
+ * straight to the page.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+class PageNode {
+
+    private static final int COUNT_OFFSET = 0;
+    private static final int KEYS_OFFSET = 8;
+
+    private final ByteBuffer page;
+    private final int pageId;
+    private final int maxItems;
+    private final int refsOffset;
+    private final int childrenOffset;
+
+    PageNode(PageStore store, int pageId, int maxItems) {
+        this.page = store.getPage(pageId);
+        this.pageId = pageId;
+        this.maxItems = maxItems;
+        refsOffset = KEYS_OFFSET + 8*maxItems;
+        childrenOffset = refsOffset + 8*maxItems;
+    }
+
+        // most items a node can hold in a page of the given size
+    static int maxItemsFor(int pageSize) {
+        return (pageSize - KEYS_OFFSET - 4) / 20;
+    }
+
+    int getPageId() {
+        return pageId;
+    }
+
+    int getNumItems() {
+        return page.getInt(COUNT_OFFSET);
+    }
+
+    boolean isLeaf() {
+        return (page.getInt(childrenOffset) == 0);
+    }
+
+    long getKey(int index) {
+        if ( (index < 0) || (index > (getNumItems()-1) ) )
+            throw new TFNodeException();
+        return page.getLong(KEYS_OFFSET + 8*index);
+    }
+
+    long getElementRef(int index) {
+        if ( (index < 0) || (index > (getNumItems()-1) ) )
+            throw new TFNodeException();
+        return page.getLong(refsOffset + 8*index);
+    }
+
+    int getChild(int index) {
+        if ( (index < 0) || (index > maxItems) )
+            throw new TFNodeException();
+        return page.getInt(childrenOffset + 4*index);
+    }
+
+    void setChild(int index, int child) {
+        if ( (index < 0) || (index > maxItems) )
+            throw new TFNodeException();
+        page.putInt(childrenOffset + 4*index, child);
+    }
+
+        // replaces the item at index, returning the old element reference
+    long replaceEntry(int index, long key, long elementRef) {
+        long returnRef = getElementRef(index);
+        page.putLong(KEYS_OFFSET + 8*index, key);
+        page.putLong(refsOffset + 8*index, elementRef);
+        return returnRef;
+    }
+
+        // inserts an item, shifting the items and children from index on to
+        // the right; whoever called this will set one of the two children
+        // either side of the new item
+    void insertEntry(int index, long key, long elementRef) {
+        int numItems = getNumItems();
+        if ( (index < 0) || (index > numItems) || (numItems == maxItems) )
+            throw new TFNodeException();
+        for (int ind=numItems; ind > index; ind--) {
+            page.putLong(KEYS_OFFSET + 8*ind, page.getLong(KEYS_OFFSET + 8*(ind-1)));
+            page.putLong(refsOffset + 8*ind, page.getLong(refsOffset + 8*(ind-1)));
+        }
+        page.putLong(KEYS_OFFSET + 8*index, key);
+        page.putLong(refsOffset + 8*index, elementRef);
+        for (int ind=numItems+1; ind > index; ind--) {
+            page.putInt(childrenOffset + 4*ind, page.getInt(childrenOffset + 4*(ind-1)));
+        }
+        page.putInt(COUNT_OFFSET, numItems+1);
+    }
+
+        // removes an item and the child with the same index, shifting the
+        // rest left; returns the element reference
+    long removeEntry(int index) {
+        int numItems = getNumItems();
+        long removedRef = getElementRef(index);
+        for (int ind=index; ind < numItems-1; ind++) {
+            page.putLong(KEYS_OFFSET + 8*ind, page.getLong(KEYS_OFFSET + 8*(ind+1)));
+            page.putLong(refsOffset + 8*ind, page.getLong(refsOffset + 8*(ind+1)));
+        }
+        for (int ind=index; ind < numItems; ind++) {
+            page.putInt(childrenOffset + 4*ind, page.getInt(childrenOffset + 4*(ind+1)));
+        }
+        page.putInt(childrenOffset + 4*numItems, 0);
+        page.putInt(COUNT_OFFSET, numItems-1);
+        return removedRef;
+    }
+
+        // drops the items from index on, and the children right of them
+    void truncate(int index) {
+        int numItems = getNumItems();
+        for (int ind=index+1; ind <= numItems; ind++) {
+            page.putInt(childrenOffset + 4*ind, 0);
+        }
+        page.putInt(COUNT_OFFSET, index);
+    }
+}
@@ -0,0 +1,66 @@
+package termproject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Fixed-size pages of memory outside the Java heap, numbered
+ * from 1, for PagedTwoFourTree.  Page 0 is the store's own header and is
+ * never handed out, so 0 can stand for "no page".  Freed pages are reused
+ * before the store grows.  A few long slots of metadata are kept for the
+ * store's user, so it can find its root again when the store is reopened.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface PageStore
+        extends Closeable {
+
+    /**
+     * Number of metadata slots available through getMeta and setMeta.
+     */
+    public static final int META_SLOTS = 8;
+
+    public int getPageSize ();
+
+    /**
+     * Returns a view of a page.  The view is not a copy: writes to it are
+     * writes to the page.  It starts at position 0 with the page size as its
+     * limit, and is meant for absolute gets and puts.
+     * @param pageId id of an allocated page
+     * @return view of the page
+     */
+    public ByteBuffer getPage (int pageId);
+
+    /**
+     * @return id of a page filled with zeros
+     */
+    public int allocatePage ();
+
+    /**
+     * Gives a page back to the store.  Views of it must not be used again.
+     * @param pageId id of an allocated page
+     */
+    public void freePage (int pageId);
+
+    /**
+     * @return number of pages in use, not counting the header
+     */
+    public int getPagesInUse ();
+
+    public long getMeta (int slot);
+
+    public void setMeta (int slot, long value);
+
+    /**
+     * Makes every change so far durable, as far as the store can.
+     */
+    public void sync () throws IOException;
+
+    /**
+     * Syncs and releases the store; no page may be used afterwards.
+     */
+    public void close () throws IOException;
+}
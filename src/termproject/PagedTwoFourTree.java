@@ -0,0 +1,571 @@
+package termproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A B-tree with long keys whose nodes are pages of a
+ * PageStore, so the tree lives outside the Java heap and, in a
+ * MappedPageStore, in a file.  Nodes are PageNodes read and written in place;
+ * a lookup copies nothing but the element it returns, which is decoded
+ * straight from the page that holds it.  Reopening the store reopens the
+ * tree, with no rebuild.
+ *
+ * Elements are encoded by a Codec into blob pages.  Each blob page starts
+ * with a count of its live elements and the bytes it has used, followed by
+ * the elements, each as a length and the encoded bytes.  New elements are
+ * appended to the newest blob page; a page is freed once all of its
+ * elements are removed.  An item refers to its element by page id and
+ * offset packed into a long, with 0 for a null element.
+ *
+ * There are no parent pointers on disk, so inserts and removes run top-down
+ * as in a top-down TwoFourTree, which needs an even order.  Changes are
+ * durable once the store is synced or closed; a crash in between can leave
+ * the file inconsistent.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class PagedTwoFourTree
+        implements Dictionary<Object,Object> {
+
+    // metadata slots of the store used by the tree
+    private static final int META_ROOT = 0;
+    private static final int META_SIZE = 1;
+    private static final int META_BLOB_PAGE = 2;
+    private static final int META_ORDER = 3;
+
+    private static final int BLOB_LIVE_OFFSET = 0;
+    private static final int BLOB_USED_OFFSET = 4;
+    private static final int BLOB_HEADER_SIZE = 8;
+
+    private final PageStore store;
+    private final Codec elementCodec;
+    private final int maxItems;
+    private final int minItems;
+
+    /**
+     * Opens the tree in a store, or creates one of the largest even order
+     * that fits a page if the store is empty.
+     * @param store store holding the tree
+     * @param elementCodec codec for elements
+     */
+    public PagedTwoFourTree(PageStore store, Codec elementCodec) {
+        this (store, elementCodec, largestOrder(store));
+    }
+
+    /**
+     * Opens the tree in a store, or creates one of the given order if the
+     * store is empty.
+     * @param store store holding the tree
+     * @param elementCodec codec for elements
+     * @param order maximum number of children of a node; even, at least 4,
+     * and small enough for a node to fit a page
+     * @exception TwoFourTreeException if the order is not allowed, or the
+     * store holds a tree of another order
+     */
+    public PagedTwoFourTree(PageStore store, Codec elementCodec, int order) {
+        if (order < 4 || order % 2 != 0 || order - 1 > PageNode.maxItemsFor(store.getPageSize())) {
+            throw new TwoFourTreeException("order must be even, at least 4 and fit a page: " + order);
+        }
+        this.store = store;
+        this.elementCodec = elementCodec;
+        maxItems = order - 1;
+        minItems = order / 2 - 1;
+
+        if (store.getMeta(META_ROOT) == 0) {
+            store.setMeta(META_ORDER, order);
+            store.setMeta(META_SIZE, 0);
+            store.setMeta(META_ROOT, store.allocatePage());
+        }
+        else if (store.getMeta(META_ORDER) != order) {
+            throw new TwoFourTreeException("store holds a tree of order " + store.getMeta(META_ORDER));
+        }
+    }
+
+    private static int largestOrder(PageStore store) {
+        if (store.getMeta(META_ROOT) != 0) {
+            return (int) store.getMeta(META_ORDER);
+        }
+        int order = PageNode.maxItemsFor(store.getPageSize()) + 1;
+        return order - order % 2;
+    }
+
+    public int size() {
+        return (int) store.getMeta(META_SIZE);
+    }
+
+    public boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    public Object findElement(Object key) {
+        return findElement(toLong(key));
+    }
+
+    public void insertElement(Object key, Object element) {
+        insertElement(toLong(key), element);
+    }
+
+    public Object removeElement(Object key) throws ElementNotFoundException {
+        return removeElement(toLong(key));
+    }
+
+    /**
+     * Searches dictionary to determine if key is present
+     * @param key to be searched for
+     * @return object corresponding to key; null if not found
+     */
+    public Object findElement(long key) {
+		PageNode node = node(root());
+		while(true) {
+			int index = FFGTE(node, key);
+			if(index != node.getNumItems() && node.getKey(index) == key) {
+				return readElement(node.getElementRef(index));
+			}
+			if(node.isLeaf()) {
+				return null;
+			}
+			node = node(node.getChild(index));
+		}
+    }
+
+    /**
+     * Inserts provided element into the Dictionary.  Full nodes are split
+     * on the way down, so the leaf has room and nothing travels back up.
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(long key, Object element) {
+		long elementRef = writeElement(element);
+		PageNode node = node(root());
+		if(node.getNumItems() == maxItems) {
+			PageNode newRoot = node(store.allocatePage());
+			newRoot.setChild(0, node.getPageId());
+			splitChild(newRoot, 0);
+			setRoot(newRoot.getPageId());
+			node = newRoot;
+		}
+
+		while(!node.isLeaf()) {
+			int index = FFGTE(node, key);
+			PageNode child = node(node.getChild(index));
+			if(child.getNumItems() == maxItems) {
+				PageNode sibling = splitChild(node, index);
+				// the middle item moved up to index; keys above it go right
+				if(key > node.getKey(index)) {
+					child = sibling;
+				}
+			}
+			node = child;
+		}
+
+		node.insertEntry(FFGTE(node, key), key, elementRef);
+		store.setMeta(META_SIZE, store.getMeta(META_SIZE) + 1);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then removes and
+     * returns corresponding object.  Every child is refilled to more than
+     * the minimum before it is entered, so nothing travels back up.
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public Object removeElement(long key) throws ElementNotFoundException {
+		PageNode node = node(root());
+		while(true) {
+			int index = FFGTE(node, key);
+			boolean found = index != node.getNumItems() && node.getKey(index) == key;
+
+			if(node.isLeaf()) {
+				if(!found) {
+					throw new ElementNotFoundException("key is not in tree: " + key);
+				}
+				return takeElement(node.removeEntry(index));
+			}
+
+			// the key's item sits between children index and index + 1, and
+			// its successor is in the latter
+			int childIndex = found ? index + 1 : index;
+			PageNode child = node(node.getChild(childIndex));
+			if(child.getNumItems() <= minItems) {
+				// refilling can move items of node, so search it again
+				PageNode survivor = refillChild(node, childIndex);
+				if(node.getNumItems() < 1) {
+					// only the root can empty; its one child replaces it
+					setRoot(survivor.getPageId());
+					store.freePage(node.getPageId());
+					node = survivor;
+				}
+				continue;
+			}
+			if(!found) {
+				node = child;
+				continue;
+			}
+
+			// go left down to a leaf for the successor, refilling each child
+			// before entering it
+			PageNode current = child;
+			while(!current.isLeaf()) {
+				PageNode next = node(current.getChild(0));
+				if(next.getNumItems() <= minItems) {
+					// a leftmost child is refilled from the right and survives
+					next = refillChild(current, 0);
+				}
+				current = next;
+			}
+			long successorKey = current.getKey(0);
+			long successorRef = current.removeEntry(0);
+			return takeElement(node.replaceEntry(index, successorKey, successorRef));
+		}
+    }
+
+    private static long toLong(Object key) {
+        if (key instanceof Long || key instanceof Integer
+                || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        throw new InvalidIntegerException("Object not an integer");
+    }
+
+    private int root() {
+        return (int) store.getMeta(META_ROOT);
+    }
+
+    private void setRoot(int pageId) {
+        store.setMeta(META_ROOT, pageId);
+    }
+
+    private PageNode node(int pageId) {
+        return new PageNode(store, pageId, maxItems);
+    }
+
+	/**
+	 * Finds the index of the first item that is greater than or equal to the
+	 * given key, by binary search; nodes here are wide.
+	 *
+	 * @param node node to be searched
+	 * @param key key to find
+	 * @return index of first item greater than or equal to given key
+	 */
+	private int FFGTE(PageNode node, long key) {
+		int low = 0;
+		int high = node.getNumItems();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(node.getKey(mid) < key) {
+				low = mid + 1;
+			}else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Splits a full child around its middle item, which moves up into the
+	 * parent.
+	 *
+	 * @param parent parent, which is not full
+	 * @param index index of the child in the parent
+	 * @return new right sibling of the child
+	 */
+	private PageNode splitChild(PageNode parent, int index) {
+		PageNode child = node(parent.getChild(index));
+		PageNode sibling = node(store.allocatePage());
+		int last = child.getNumItems() - 1;
+		int middle = child.getNumItems() / 2;
+
+		for(int i = middle + 1; i <= last; i++) {
+			sibling.insertEntry(i - middle - 1, child.getKey(i), child.getElementRef(i));
+		}
+		for(int i = middle + 1; i <= last + 1; i++) {
+			sibling.setChild(i - middle - 1, child.getChild(i));
+		}
+		long middleKey = child.getKey(middle);
+		long middleRef = child.getElementRef(middle);
+		child.truncate(middle);
+
+		parent.insertEntry(index, middleKey, middleRef);
+		parent.setChild(index, child.getPageId());
+		parent.setChild(index + 1, sibling.getPageId());
+		return sibling;
+	}
+
+	/**
+	 * Gives a minimal child one more item, by a transfer from a sibling that
+	 * can spare one or else by fusing it with a sibling.
+	 *
+	 * @param parent parent of the child
+	 * @param index index of the child in the parent
+	 * @return the refilled node; the child itself, or the left sibling it
+	 * was fused into
+	 */
+	private PageNode refillChild(PageNode parent, int index) {
+		PageNode child = node(parent.getChild(index));
+		PageNode left = null;
+		if(index > 0) {
+			left = node(parent.getChild(index - 1));
+			if(left.getNumItems() > minItems) {
+				leftTransfer(parent, index, left, child);
+				return child;
+			}
+		}
+		if(index < parent.getNumItems()) {
+			PageNode right = node(parent.getChild(index + 1));
+			if(right.getNumItems() > minItems) {
+				rightTransfer(parent, index, child, right);
+			}else {
+				fuse(parent, index, child, right);
+			}
+			return child;
+		}
+		fuse(parent, index - 1, left, child);
+		return left;
+	}
+
+	/**
+	 * Moves the last item of the left sibling up into the parent, and the
+	 * parent's separating item down to the front of the child.
+	 */
+	private void leftTransfer(PageNode parent, int index, PageNode left, PageNode child) {
+		int last = left.getNumItems() - 1;
+		int lastChild = left.getChild(last + 1);
+		long lastKey = left.getKey(last);
+		long lastRef = left.getElementRef(last);
+		left.truncate(last);
+
+		long parentKey = parent.getKey(index - 1);
+		long parentRef = parent.replaceEntry(index - 1, lastKey, lastRef);
+		child.insertEntry(0, parentKey, parentRef);
+		child.setChild(0, lastChild);
+	}
+
+	/**
+	 * Moves the first item of the right sibling up into the parent, and the
+	 * parent's separating item down to the end of the child.
+	 */
+	private void rightTransfer(PageNode parent, int index, PageNode child, PageNode right) {
+		int firstChild = right.getChild(0);
+		long firstKey = right.getKey(0);
+		long firstRef = right.removeEntry(0);
+
+		long parentKey = parent.getKey(index);
+		long parentRef = parent.replaceEntry(index, firstKey, firstRef);
+		child.insertEntry(child.getNumItems(), parentKey, parentRef);
+		child.setChild(child.getNumItems(), firstChild);
+	}
+
+	/**
+	 * Fuses the children either side of the parent's item at index, along
+	 * with that item, into the left one, and frees the right one's page.
+	 */
+	private void fuse(PageNode parent, int index, PageNode left, PageNode right) {
+		long parentKey = parent.getKey(index);
+		long parentRef = parent.removeEntry(index);
+		// removeEntry dropped the child at index, which was left, and shifted
+		// right into its slot; put left back in place of right
+		parent.setChild(index, left.getPageId());
+
+		appendEntry(left, parentKey, parentRef, right.getChild(0));
+		for(int i = 0; i < right.getNumItems(); i++) {
+			appendEntry(left, right.getKey(i), right.getElementRef(i), right.getChild(i + 1));
+		}
+		store.freePage(right.getPageId());
+	}
+
+	private static void appendEntry(PageNode node, long key, long elementRef, int child) {
+		node.insertEntry(node.getNumItems(), key, elementRef);
+		node.setChild(node.getNumItems(), child);
+	}
+
+	/**
+	 * Encodes an element onto the newest blob page, starting a new one if it
+	 * does not fit.
+	 *
+	 * @param element element to store
+	 * @return reference to the stored element; 0 for null
+	 */
+	private long writeElement(Object element) {
+		if(element == null) {
+			return 0;
+		}
+		int length = elementCodec.encodedSize(element);
+		int pageSize = store.getPageSize();
+		if(BLOB_HEADER_SIZE + 4 + length > pageSize) {
+			throw new TwoFourTreeException("element of " + length + " bytes does not fit a page");
+		}
+
+		int pageId = (int) store.getMeta(META_BLOB_PAGE);
+		ByteBuffer page = (pageId == 0) ? null : store.getPage(pageId);
+		if(page == null || page.getInt(BLOB_USED_OFFSET) + 4 + length > pageSize) {
+			pageId = store.allocatePage();
+			store.setMeta(META_BLOB_PAGE, pageId);
+			page = store.getPage(pageId);
+			page.putInt(BLOB_USED_OFFSET, BLOB_HEADER_SIZE);
+		}
+
+		int offset = page.getInt(BLOB_USED_OFFSET);
+		page.putInt(offset, length);
+		page.position(offset + 4);
+		elementCodec.encode(element, page);
+		page.putInt(BLOB_USED_OFFSET, offset + 4 + length);
+		page.putInt(BLOB_LIVE_OFFSET, page.getInt(BLOB_LIVE_OFFSET) + 1);
+		return ((long) pageId << 32) | offset;
+	}
+
+	/**
+	 * Decodes an element in place from its blob page.
+	 *
+	 * @param elementRef reference returned by writeElement
+	 * @return the element
+	 */
+	private Object readElement(long elementRef) {
+		if(elementRef == 0) {
+			return null;
+		}
+		ByteBuffer page = store.getPage((int) (elementRef >>> 32));
+		int offset = (int) elementRef;
+		page.limit(offset + 4 + page.getInt(offset));
+		page.position(offset + 4);
+		return elementCodec.decode(page);
+	}
+
+	/**
+	 * Reads a removed item's element and releases its space, freeing its
+	 * blob page if it was the last element there.  Also counts the item out
+	 * of the tree's size.
+	 *
+	 * @param elementRef reference of the removed item's element
+	 * @return the element
+	 */
+	private Object takeElement(long elementRef) {
+		store.setMeta(META_SIZE, store.getMeta(META_SIZE) - 1);
+		Object element = readElement(elementRef);
+		if(elementRef == 0) {
+			return element;
+		}
+
+		int pageId = (int) (elementRef >>> 32);
+		ByteBuffer page = store.getPage(pageId);
+		int live = page.getInt(BLOB_LIVE_OFFSET) - 1;
+		page.putInt(BLOB_LIVE_OFFSET, live);
+		if(live == 0) {
+			if(pageId == store.getMeta(META_BLOB_PAGE)) {
+				// the newest page stays, and is refilled from the start
+				page.putInt(BLOB_USED_OFFSET, BLOB_HEADER_SIZE);
+			}else {
+				store.freePage(pageId);
+			}
+		}
+		return element;
+	}
+
+    /**
+     * Checks the structure of the tree: items in order within and across
+     * nodes, every node but the root at least minimally full, all leaves at
+     * the same depth, and an item count matching size.
+     * @exception TwoFourTreeException describing the first problem found
+     */
+    public void checkTree() {
+        long[] leafDepth = {-1};
+        long count = checkTreeFromNode(node(root()), true, 0, Long.MIN_VALUE, Long.MAX_VALUE, leafDepth);
+        if (count != size()) {
+            throw new TwoFourTreeException("tree holds " + count + " items but size is " + size());
+        }
+    }
+
+    private long checkTreeFromNode(PageNode start, boolean isRoot, int depth,
+            long low, long high, long[] leafDepth) {
+        int numItems = start.getNumItems();
+        if (numItems > maxItems || (!isRoot && numItems < minItems)) {
+            throw new TwoFourTreeException("node holds " + numItems + " items");
+        }
+        for (int i = 0; i < numItems; i++) {
+            long key = start.getKey(i);
+            if (key < low || key > high || (i > 0 && key < start.getKey(i - 1))) {
+                throw new TwoFourTreeException("key out of order: " + key);
+            }
+        }
+
+        long count = numItems;
+        if (start.isLeaf()) {
+            if (leafDepth[0] == -1) {
+                leafDepth[0] = depth;
+            }
+            else if (leafDepth[0] != depth) {
+                throw new TwoFourTreeException("leaves at depths " + leafDepth[0] + " and " + depth);
+            }
+            return count;
+        }
+        for (int i = 0; i <= numItems; i++) {
+            if (start.getChild(i) == 0) {
+                throw new TwoFourTreeException("mixed null and non-null children");
+            }
+            count += checkTreeFromNode(node(start.getChild(i)), false, depth + 1,
+                    (i == 0) ? low : start.getKey(i - 1),
+                    (i == numItems) ? high : start.getKey(i),
+                    leafDepth);
+        }
+        return count;
+    }
+
+    /**
+     * Self-test: fills a tree in a temporary file, closes and reopens it,
+     * checks it survived, then empties it again.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("paged", ".tree");
+        file.deleteOnExit();
+        int testSize = 100000;
+        Random rng = new Random(1);
+        long[] keys = new long[testSize];
+
+        MappedPageStore store = new MappedPageStore(file, 1024);
+        PagedTwoFourTree myTree = new PagedTwoFourTree(store, new StringCodec(), 6);
+        for (int i = 0; i < testSize; i++) {
+            keys[i] = rng.nextInt(testSize / 4) - testSize / 8;
+            myTree.insertElement(keys[i], "element " + i);
+        }
+        for (int i = 0; i < testSize; i += 2) {
+            if (!myTree.removeElement(keys[i]).toString().startsWith("element ")) {
+                throw new TwoFourTreeException("main: wrong element removed for " + keys[i]);
+            }
+        }
+        myTree.checkTree();
+        store.close();
+        System.out.println("test 1: insert and remove done");
+
+        store = new MappedPageStore(file, 1024);
+        myTree = new PagedTwoFourTree(store, new StringCodec());
+        if (myTree.size() != testSize / 2) {
+            throw new TwoFourTreeException("main: reopened tree holds " + myTree.size() + " items");
+        }
+        myTree.checkTree();
+        for (int i = 1; i < testSize; i += 2) {
+            if (myTree.findElement(keys[i]) == null) {
+                throw new TwoFourTreeException("main: key lost on reopen: " + keys[i]);
+            }
+        }
+        System.out.println("test 2: reopen done");
+
+        for (int i = 1; i < testSize; i += 2) {
+            myTree.removeElement(keys[i]);
+        }
+        myTree.checkTree();
+        if (!myTree.isEmpty() || store.getPagesInUse() != 2) {
+            throw new TwoFourTreeException("main: " + store.getPagesInUse() + " pages in use when empty");
+        }
+        myTree.insertElement(7L, null);
+        if (myTree.findElement(7L) != null || myTree.removeElement(7L) != null) {
+            throw new TwoFourTreeException("main: null element lost");
+        }
+        store.close();
+        System.out.println("test 3: remove all done");
+    }
+}
@@ -0,0 +1,176 @@
+package termproject;
+
+import java.util.Arrays;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: An immutable node for PersistentTwoFourTree.  Its arrays are
+ * exactly as long as it is full and are never written after construction;
+ * every change makes a new node that shares the untouched children, so one
+ * node can belong to many versions of a tree at once.  For the same reason
+ * a node has no parent pointer.
+ *
+ * A node built during an insert may briefly hold one item too many, and one
+ * built during a remove one too few; the tree splits or refills it before
+ * the new version is published.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public final class PersistentTFNode {
+
+    private static final Object[] NO_ITEMS = new Object[0];
+
+    private final Object[] nodeKeys;
+    private final Object[] nodeElements;
+        // null for a leaf, otherwise one longer than nodeKeys
+    private final PersistentTFNode[] nodeChildren;
+
+    private PersistentTFNode(Object[] keys, Object[] elements, PersistentTFNode[] children) {
+        nodeKeys = keys;
+        nodeElements = elements;
+        nodeChildren = children;
+    }
+
+        // a leaf holding a single entry
+    PersistentTFNode(Object key, Object element) {
+        this (new Object[] {key}, new Object[] {element}, null);
+    }
+
+
+    public int getNumItems() {
+        return nodeKeys.length;
+    }
+
+    public boolean isLeaf() {
+        return (nodeChildren == null);
+    }
+
+    public Object getKey(int index) {
+        if ( (index < 0) || (index > (nodeKeys.length-1) ) )
+            throw new TFNodeException();
+        return nodeKeys[index];
+    }
+
+    public Object getElement(int index) {
+        if ( (index < 0) || (index > (nodeKeys.length-1) ) )
+            throw new TFNodeException();
+        return nodeElements[index];
+    }
+
+    public PersistentTFNode getChild(int index) {
+        if ( (index < 0) || (index > nodeKeys.length) )
+            throw new TFNodeException();
+        return (nodeChildren == null) ? null : nodeChildren[index];
+    }
+
+        // leaf only: a copy with an entry inserted at index
+    PersistentTFNode withEntry(int index, Object key, Object element) {
+        return new PersistentTFNode(insert(nodeKeys, index, key),
+                insert(nodeElements, index, element), null);
+    }
+
+        // leaf only: a copy with the entry at index removed
+    PersistentTFNode withoutEntry(int index) {
+        return new PersistentTFNode(remove(nodeKeys, index),
+                remove(nodeElements, index), null);
+    }
+
+        // a copy with the entry at index replaced, children unchanged
+    PersistentTFNode withReplacedEntry(int index, Object key, Object element) {
+        return new PersistentTFNode(replace(nodeKeys, index, key),
+                replace(nodeElements, index, element), nodeChildren);
+    }
+
+        // a copy with the child at index replaced
+    PersistentTFNode withChild(int index, PersistentTFNode child) {
+        return new PersistentTFNode(nodeKeys, nodeElements,
+                replace(nodeChildren, index, child));
+    }
+
+        // a new root holding this node's middle entry above its two halves
+    PersistentTFNode split() {
+        int mid = getNumItems() / 2;
+        return new PersistentTFNode(new Object[] {nodeKeys[mid]}, new Object[] {nodeElements[mid]},
+                new PersistentTFNode[] {slice(0, mid), slice(mid+1, getNumItems())});
+    }
+
+        // a copy in which child, which is to take the slot at index, is split
+        // around its middle entry; the middle entry moves up into this node
+    PersistentTFNode withSplitChild(int index, PersistentTFNode child) {
+        int mid = child.getNumItems() / 2;
+        PersistentTFNode[] children = replace(nodeChildren, index, child.slice(0, mid));
+        return new PersistentTFNode(insert(nodeKeys, index, child.nodeKeys[mid]),
+                insert(nodeElements, index, child.nodeElements[mid]),
+                insert(children, index+1, child.slice(mid+1, child.getNumItems())));
+    }
+
+        // a copy in which the children at index and index+1, with the entry
+        // between them, are replaced by joined split around its middle entry;
+        // this moves entries from the fuller child to the emptier one
+    PersistentTFNode withRedistributedChildren(int index, PersistentTFNode joined) {
+        int mid = joined.getNumItems() / 2;
+        PersistentTFNode[] children = replace(nodeChildren, index, joined.slice(0, mid));
+        return new PersistentTFNode(replace(nodeKeys, index, joined.nodeKeys[mid]),
+                replace(nodeElements, index, joined.nodeElements[mid]),
+                replace(children, index+1, joined.slice(mid+1, joined.getNumItems())));
+    }
+
+        // a copy in which the children at index and index+1, with the entry
+        // between them, are replaced by the single node joined
+    PersistentTFNode withFusedChildren(int index, PersistentTFNode joined) {
+        PersistentTFNode[] children = replace(nodeChildren, index, joined);
+        return new PersistentTFNode(remove(nodeKeys, index),
+                remove(nodeElements, index), remove(children, index+1));
+    }
+
+        // left's entries, then the given entry, then right's entries
+    static PersistentTFNode join(PersistentTFNode left, Object key, Object element,
+            PersistentTFNode right) {
+        int leftItems = left.getNumItems();
+        int numItems = leftItems + 1 + right.getNumItems();
+        Object[] keys = new Object[numItems];
+        Object[] elements = new Object[numItems];
+        System.arraycopy(left.nodeKeys, 0, keys, 0, leftItems);
+        System.arraycopy(left.nodeElements, 0, elements, 0, leftItems);
+        keys[leftItems] = key;
+        elements[leftItems] = element;
+        System.arraycopy(right.nodeKeys, 0, keys, leftItems+1, right.getNumItems());
+        System.arraycopy(right.nodeElements, 0, elements, leftItems+1, right.getNumItems());
+
+        PersistentTFNode[] children = null;
+        if (left.nodeChildren != null) {
+            children = new PersistentTFNode[numItems+1];
+            System.arraycopy(left.nodeChildren, 0, children, 0, leftItems+1);
+            System.arraycopy(right.nodeChildren, 0, children, leftItems+1, right.getNumItems()+1);
+        }
+        return new PersistentTFNode(keys, elements, children);
+    }
+
+        // the entries from..to-1 and the children between them
+    private PersistentTFNode slice(int from, int to) {
+        return new PersistentTFNode(
+                (from == to) ? NO_ITEMS : Arrays.copyOfRange(nodeKeys, from, to),
+                (from == to) ? NO_ITEMS : Arrays.copyOfRange(nodeElements, from, to),
+                (nodeChildren == null) ? null : Arrays.copyOfRange(nodeChildren, from, to+1));
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        T[] copy = Arrays.copyOf(array, array.length+1);
+        System.arraycopy(array, index, copy, index+1, array.length-index);
+        copy[index] = value;
+        return copy;
+    }
+
+    private static <T> T[] remove(T[] array, int index) {
+        T[] copy = Arrays.copyOf(array, array.length-1);
+        System.arraycopy(array, index+1, copy, index, array.length-index-1);
+        return copy;
+    }
+
+    private static <T> T[] replace(T[] array, int index, T value) {
+        T[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+}
@@ -0,0 +1,610 @@
+package termproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A persistent (copy-on-write) B-tree.  Nodes are immutable
+ * PersistentTFNodes; an insert or remove copies only the nodes on the path
+ * from the root to the change, splitting or refilling them as it goes back
+ * up, and shares every other node with the previous version.
+ *
+ * Each version is a Snapshot, and the tree is one atomic reference to the
+ * current Snapshot.  Readers take a snapshot with a single volatile read and
+ * never block, never retry and never see a half-finished change, and the
+ * snapshot they hold stays valid however the tree moves on.  Since every
+ * change lands on a new root, publishing the root publishes the change;
+ * there is no child slot that would need a CAS of its own.
+ *
+ * By default writers are serialized on the tree and publish each new
+ * version with one volatile write.  With lock-free writes, a writer builds
+ * its version from the current one off to the side and publishes it with a
+ * compare-and-set of the root, starting over from the newer version if
+ * another writer got there first.  That never blocks a writer behind a
+ * slow one, at the cost of rebuilt paths when writers collide, so it suits
+ * trees written by few threads at a time.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class PersistentTwoFourTree
+        implements Dictionary<Object,Object> {
+
+    private static final int DEFAULT_ORDER = 4;
+
+    private final Comparator treeComp;
+    private final int maxItems;
+    private final int minItems;
+    private final boolean lockFreeWrites;
+    private final AtomicReference<Snapshot> current;
+
+    public PersistentTwoFourTree(Comparator comp) {
+        this (comp, DEFAULT_ORDER);
+    }
+
+    /**
+     * Creates an empty persistent B-tree of the given order.
+     * @param comp comparator for keys
+     * @param order maximum number of children of a node; at least 3
+     */
+    public PersistentTwoFourTree(Comparator comp, int order) {
+        this (comp, order, false);
+    }
+
+    /**
+     * Creates an empty persistent B-tree of the given order.
+     * @param comp comparator for keys
+     * @param order maximum number of children of a node; at least 3
+     * @param lockFreeWrites true to publish changes with a compare-and-set
+     * of the root instead of serializing writers
+     */
+    public PersistentTwoFourTree(Comparator comp, int order, boolean lockFreeWrites) {
+        if (order < 3) {
+            throw new TwoFourTreeException("order must be at least 3: " + order);
+        }
+        treeComp = comp;
+        maxItems = order - 1;
+        minItems = (order + 1) / 2 - 1;
+        this.lockFreeWrites = lockFreeWrites;
+        current = new AtomicReference<Snapshot>(new Snapshot(null, 0));
+    }
+
+    /**
+     * @return the current version of the tree; it never changes afterwards
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public int size() {
+        return current.get().size();
+    }
+
+    public boolean isEmpty() {
+        return current.get().isEmpty();
+    }
+
+    /**
+     * Searches the current version to determine if key is present
+     * @param key to be searched for
+     * @return object corresponding to key; null if not found
+     */
+    public Object findElement(Object key) {
+        return current.get().findElement(key);
+    }
+
+    /**
+     * Inserts provided element into the Dictionary
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(Object key, Object element) {
+        if (!lockFreeWrites) {
+            synchronized (this) {
+                current.set(current.get().insert(key, element));
+            }
+            return;
+        }
+        while (true) {
+            Snapshot base = current.get();
+            if (current.compareAndSet(base, base.insert(key, element))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then
+     * removes and returns corresponding object
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public Object removeElement(Object key) throws ElementNotFoundException {
+        Object[] removed = new Object[2];
+        if (!lockFreeWrites) {
+            synchronized (this) {
+                current.set(current.get().remove(key, removed));
+            }
+            return removed[1];
+        }
+        while (true) {
+            Snapshot base = current.get();
+            if (current.compareAndSet(base, base.remove(key, removed))) {
+                return removed[1];
+            }
+        }
+    }
+
+    /**
+     * One immutable version of the tree.  Lookups on it always see exactly
+     * the entries it was created with; insert and remove return a new
+     * version and leave this one as it is.
+     */
+    public final class Snapshot
+            implements ReadOnlyDictionary<Object,Object> {
+
+        private final PersistentTFNode root;
+        private final int size;
+
+        private Snapshot(PersistentTFNode root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return (size == 0);
+        }
+
+        /**
+         * Searches this version to determine if key is present
+         * @param key to be searched for
+         * @return object corresponding to key; null if not found
+         */
+        public Object findElement(Object key) {
+            PersistentTFNode node = root;
+            while(node != null) {
+                int index = FFGTE(node, key);
+                if(index < node.getNumItems() && treeComp.compare(node.getKey(index), key) == 0) {
+                    return node.getElement(index);
+                }
+                node = node.getChild(index);
+            }
+            return null;
+        }
+
+        /**
+         * @return a new version holding this one's entries plus the given one
+         */
+        public Snapshot insert(Object key, Object element) {
+            if(root == null) {
+                return new Snapshot(new PersistentTFNode(key, element), 1);
+            }
+            PersistentTFNode newRoot = insertBelow(root, key, element);
+            if(newRoot.getNumItems() > maxItems) {
+                newRoot = newRoot.split();
+            }
+            return new Snapshot(newRoot, size + 1);
+        }
+
+        /**
+         * @return a new version holding this one's entries minus one entry
+         * with the given key
+         * @exception ElementNotFoundException if the key is not in this version
+         */
+        public Snapshot remove(Object key) throws ElementNotFoundException {
+            return remove(key, new Object[2]);
+        }
+
+            // removed receives the key and element taken out
+        private Snapshot remove(Object key, Object[] removed) {
+            if(root == null) {
+                throw new ElementNotFoundException("key not found: " + key);
+            }
+            PersistentTFNode newRoot = removeBelow(root, key, removed);
+            if(newRoot.getNumItems() == 0) {
+                // the root's last entry went down into a fusion, or was the
+                // tree's last entry
+                newRoot = newRoot.getChild(0);
+            }
+            return new Snapshot(newRoot, size - 1);
+        }
+
+        /**
+         * @return an iterator over this version's items in key order
+         */
+        public Iterator<Item> iterator() {
+            return new SnapshotIterator(root);
+        }
+
+        /**
+         * Checks the B-tree invariants of this version.
+         * @exception TwoFourTreeException describing the first problem found
+         */
+        public void checkTree() {
+            int count = 0;
+            if(root != null) {
+                count = checkTreeFromNode(root, 0, null, null, new int[] {-1});
+            }
+            if(count != size) {
+                throw new TwoFourTreeException("tree holds " + count + " items but size is " + size);
+            }
+        }
+
+        private int checkTreeFromNode(PersistentTFNode start, int depth,
+                Object low, Object high, int[] leafDepth) {
+            int numItems = start.getNumItems();
+            if(numItems > maxItems || numItems < ((start == root) ? 1 : minItems)) {
+                throw new TwoFourTreeException("node holds " + numItems + " items");
+            }
+            for(int i = 0; i < numItems; i++) {
+                Object key = start.getKey(i);
+                if((low != null && treeComp.isLessThan(key, low))
+                        || (high != null && treeComp.isGreaterThan(key, high))
+                        || (i > 0 && treeComp.isLessThan(key, start.getKey(i - 1)))) {
+                    throw new TwoFourTreeException("key out of order: " + key);
+                }
+            }
+
+            int count = numItems;
+            if(start.isLeaf()) {
+                if(leafDepth[0] == -1) {
+                    leafDepth[0] = depth;
+                }else if(leafDepth[0] != depth) {
+                    throw new TwoFourTreeException("leaves at depths " + leafDepth[0] + " and " + depth);
+                }
+                return count;
+            }
+            for(int i = 0; i <= numItems; i++) {
+                count += checkTreeFromNode(start.getChild(i), depth + 1,
+                        (i == 0) ? low : start.getKey(i - 1),
+                        (i == numItems) ? high : start.getKey(i),
+                        leafDepth);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Finds the first index in node whose key is greater than or equal to key
+     * @param node to search
+     * @param key to compare with
+     * @return that index, or the number of items if every key is smaller
+     */
+    private int FFGTE(PersistentTFNode node, Object key) {
+		int low = 0;
+		int high = node.getNumItems();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(treeComp.compare(node.getKey(mid), key) < 0) {
+				low = mid + 1;
+			}else {
+				high = mid;
+			}
+		}
+		return low;
+    }
+
+    /**
+     * Inserts into a copy of the subtree under node
+     * @return the copy of node; it may hold one item too many
+     */
+    private PersistentTFNode insertBelow(PersistentTFNode node, Object key, Object element) {
+		int index = FFGTE(node, key);
+		if(node.isLeaf()) {
+			return node.withEntry(index, key, element);
+		}
+		PersistentTFNode child = insertBelow(node.getChild(index), key, element);
+		if(child.getNumItems() > maxItems) {
+			return node.withSplitChild(index, child);
+		}
+		return node.withChild(index, child);
+    }
+
+    /**
+     * Removes one entry with the given key from a copy of the subtree under
+     * node.  An entry in an internal node is replaced by its in-order
+     * successor, which is removed from the leaf it was in.
+     * @param removed receives the key and element taken out
+     * @return the copy of node; it may hold one item too few
+     * @exception ElementNotFoundException if the key is not in the subtree
+     */
+    private PersistentTFNode removeBelow(PersistentTFNode node, Object key, Object[] removed) {
+		int index = FFGTE(node, key);
+		boolean found = index < node.getNumItems() && treeComp.compare(node.getKey(index), key) == 0;
+
+		if(node.isLeaf()) {
+			if(!found) {
+				throw new ElementNotFoundException("key not found: " + key);
+			}
+			removed[0] = node.getKey(index);
+			removed[1] = node.getElement(index);
+			return node.withoutEntry(index);
+		}
+		if(found) {
+			removed[0] = node.getKey(index);
+			removed[1] = node.getElement(index);
+			Object[] successor = new Object[2];
+			PersistentTFNode child = removeFirst(node.getChild(index + 1), successor);
+			node = node.withReplacedEntry(index, successor[0], successor[1]);
+			return refill(node, index + 1, child);
+		}
+		return refill(node, index, removeBelow(node.getChild(index), key, removed));
+    }
+
+    /**
+     * Removes the smallest entry from a copy of the subtree under node
+     * @param removed receives the key and element taken out
+     * @return the copy of node; it may hold one item too few
+     */
+    private PersistentTFNode removeFirst(PersistentTFNode node, Object[] removed) {
+		if(node.isLeaf()) {
+			removed[0] = node.getKey(0);
+			removed[1] = node.getElement(0);
+			return node.withoutEntry(0);
+		}
+		return refill(node, 0, removeFirst(node.getChild(0), removed));
+    }
+
+    /**
+     * Puts child into the slot at index of a copy of node.  If child has too
+     * few items, it first takes entries through node from a sibling that can
+     * spare them, preferring the left one, or else is fused with a sibling.
+     * @return the copy of node; it may hold one item too few after a fusion
+     */
+    private PersistentTFNode refill(PersistentTFNode node, int index, PersistentTFNode child) {
+		if(child.getNumItems() >= minItems) {
+			return node.withChild(index, child);
+		}
+
+		// sep is the entry between child and the sibling it works with
+		int sep;
+		if(index == node.getNumItems()) {
+			sep = index - 1;
+		}else if(index == 0) {
+			sep = 0;
+		}else if(node.getChild(index - 1).getNumItems() > minItems
+				|| node.getChild(index + 1).getNumItems() <= minItems) {
+			sep = index - 1;
+		}else {
+			sep = index;
+		}
+		PersistentTFNode left = (sep < index) ? node.getChild(sep) : child;
+		PersistentTFNode right = (sep < index) ? child : node.getChild(sep + 1);
+		PersistentTFNode joined = PersistentTFNode.join(left,
+				node.getKey(sep), node.getElement(sep), right);
+
+		// the sibling had more than minItems: share the entries out again
+		if(joined.getNumItems() > 2 * minItems) {
+			return node.withRedistributedChildren(sep, joined);
+		}
+		return node.withFusedChildren(sep, joined);
+    }
+
+    /**
+     * Walks the items of one version in key order, keeping the path to the
+     * next item on a stack.  Versions never change, so it cannot go stale.
+     */
+    private static final class SnapshotIterator
+            implements Iterator<Item> {
+
+        private PersistentTFNode[] stackNodes = new PersistentTFNode[8];
+        private int[] stackIndexes = new int[8];
+        private int depth = 0;
+
+        SnapshotIterator(PersistentTFNode root) {
+            pushLeftmost(root);
+        }
+
+        public boolean hasNext() {
+            return (depth > 0);
+        }
+
+        public Item next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            PersistentTFNode node = stackNodes[depth-1];
+            int index = stackIndexes[depth-1]++;
+            Item item = new Item(node.getKey(index), node.getElement(index));
+            // the successor is the leftmost item right of this one, if the
+            // node has children, else the next item up the stack
+            if (index + 1 == node.getNumItems()) {
+                stackNodes[--depth] = null;
+            }
+            pushLeftmost(node.getChild(index + 1));
+            return item;
+        }
+
+        private void pushLeftmost(PersistentTFNode node) {
+            while (node != null) {
+                if (depth == stackNodes.length) {
+                    stackNodes = Arrays.copyOf(stackNodes, 2*depth);
+                    stackIndexes = Arrays.copyOf(stackIndexes, 2*depth);
+                }
+                stackNodes[depth] = node;
+                stackIndexes[depth] = 0;
+                depth++;
+                node = node.getChild(0);
+            }
+        }
+    }
+
+    /**
+     * Self-test: differential checks against a list of expected keys,
+     * snapshot isolation, and readers running against a writer.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Comparator myComp = new IntegerComparator();
+        Random rng = new Random(1);
+
+        for (int order : new int[] {3, 4, 5, 8, 33}) {
+            PersistentTwoFourTree myTree = new PersistentTwoFourTree(myComp, order);
+            List<Integer> keys = new ArrayList<Integer>();
+            for (int i = 0; i < 20000; i++) {
+                if (keys.isEmpty() || rng.nextInt(10) < 6) {
+                    int j = rng.nextInt(2000);
+                    myTree.insertElement(j, j);
+                    keys.add(j);
+                }
+                else {
+                    int j = keys.remove(rng.nextInt(keys.size()));
+                    int out = (Integer) myTree.removeElement(j);
+                    if (out != j) {
+                        throw new TwoFourTreeException("main: wrong element removed: " + out + " ; " + j);
+                    }
+                }
+            }
+            myTree.snapshot().checkTree();
+            while (!keys.isEmpty()) {
+                int j = keys.remove(keys.size() - 1);
+                myTree.removeElement(j);
+            }
+            myTree.snapshot().checkTree();
+            if (!myTree.isEmpty()) {
+                throw new TwoFourTreeException("main: tree not empty");
+            }
+        }
+        System.out.println("test 1: random inserts and removes done");
+
+        PersistentTwoFourTree myTree = new PersistentTwoFourTree(myComp);
+        for (int i = 0; i < 1000; i++) {
+            myTree.insertElement(i, i);
+        }
+        Snapshot before = myTree.snapshot();
+        for (int i = 0; i < 1000; i += 2) {
+            myTree.removeElement(i);
+        }
+        Snapshot after = myTree.snapshot();
+        for (int i = 0; i < 1000; i++) {
+            if (before.findElement(i) == null || (after.findElement(i) == null) != (i % 2 == 0)) {
+                throw new TwoFourTreeException("main: snapshot changed at " + i);
+            }
+        }
+        before.checkTree();
+        after.checkTree();
+        int expectedKey = 0;
+        for (Item item : after) {
+            if (((Integer) item.key()) != expectedKey + 1) {
+                throw new TwoFourTreeException("main: snapshot iterator gave " + item.key()
+                        + " after " + expectedKey);
+            }
+            expectedKey += 2;
+        }
+        if (expectedKey != 1000 || !before.iterator().next().key().equals(0)) {
+            throw new TwoFourTreeException("main: snapshot iterator stopped at " + expectedKey);
+        }
+        try {
+            myTree.removeElement(0);
+            throw new TwoFourTreeException("main: removed a missing key");
+        }
+        catch (ElementNotFoundException exc) {
+            // expected
+        }
+        System.out.println("test 2: snapshot isolation done");
+
+        // readers check that every snapshot they take is a prefix 0..n-1,
+        // while the writer keeps appending and trimming
+        final PersistentTwoFourTree sharedTree = new PersistentTwoFourTree(myComp);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] readers = new Thread[4];
+        final int rounds = 200;
+        final AtomicBoolean done = new AtomicBoolean();
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        while (!done.get()) {
+                            Snapshot snap = sharedTree.snapshot();
+                            for (int i = 0; i < snap.size(); i++) {
+                                if (snap.findElement(i) == null) {
+                                    throw new TwoFourTreeException("snapshot of " + snap.size() + " misses " + i);
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable exc) {
+                        failure.compareAndSet(null, exc);
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        start.countDown();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < 100; i++) {
+                sharedTree.insertElement(sharedTree.size(), r);
+            }
+            for (int i = 0; i < 50; i++) {
+                sharedTree.removeElement(sharedTree.size() - 1);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new TwoFourTreeException("main: reader failed: " + failure.get());
+        }
+        sharedTree.snapshot().checkTree();
+        System.out.println("test 3: concurrent snapshot readers done");
+
+        // writers racing to publish: each inserts its own keys, then
+        // removes every other one
+        final PersistentTwoFourTree casTree = new PersistentTwoFourTree(myComp, 4, true);
+        final int perWriter = 5000;
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int first = t * perWriter;
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = first; i < first + perWriter; i++) {
+                            casTree.insertElement(i, i);
+                        }
+                        for (int i = first; i < first + perWriter; i += 2) {
+                            if ((Integer) casTree.removeElement(i) != i) {
+                                throw new TwoFourTreeException("wrong element removed for " + i);
+                            }
+                        }
+                    }
+                    catch (Throwable exc) {
+                        failure.compareAndSet(null, exc);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw new TwoFourTreeException("main: writer failed: " + failure.get());
+        }
+        Snapshot last = casTree.snapshot();
+        last.checkTree();
+        for (int i = 0; i < writers.length * perWriter; i++) {
+            if ((last.findElement(i) == null) != (i % 2 == 0)) {
+                throw new TwoFourTreeException("main: lock-free writes lost " + i);
+            }
+        }
+        if (last.size() != writers.length * perWriter / 2) {
+            throw new TwoFourTreeException("main: lock-free tree holds " + last.size() + " items");
+        }
+        System.out.println("test 4: lock-free writers done");
+    }
+}
@@ -0,0 +1,24 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: The lookups of a Dictionary without its inserts and
+ * removes, for views that cannot change, such as a version of a
+ * PersistentTwoFourTree.  Items are visited in key order.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface ReadOnlyDictionary<K,V>
+        extends Iterable<Item> {
+
+    public int size();
+    public boolean isEmpty();
+
+    /**
+    * Searches dictionary to determine if key is present
+    * @param key to be searched for
+    * @return object corresponding to key; null if not found
+    */
+    public V findElement (Object key);
+}
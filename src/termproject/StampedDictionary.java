@@ -0,0 +1,111 @@
+package termproject;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Makes any Dictionary safe to share between threads with a
+ * StampedLock.  Lookups first run without locking under an optimistic stamp
+ * and only take the read lock if a writer got in the way, so a read-mostly
+ * workload keeps all cores busy.  Inserts and removes take the write lock.
+ *
+ * An optimistic lookup may see the dictionary half way through a change; it
+ * must not hang or corrupt anything when it does, and anything it throws is
+ * ignored unless the stamp is still valid.  TwoFourTree lookups only read,
+ * and always end at a null child, so they qualify.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class StampedDictionary<K,V>
+        implements Dictionary<K,V> {
+
+    private final Dictionary<K,V> dictionary;
+    private final StampedLock lock = new StampedLock();
+
+    public StampedDictionary(Dictionary<K,V> dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = dictionary.size();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = dictionary.size();
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    /**
+     * Searches dictionary to determine if key is present
+     * @param key to be searched for
+     * @return object corresponding to key; null if not found
+     */
+    public V findElement(Object key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                V element = dictionary.findElement(key);
+                if (lock.validate(stamp)) {
+                    return element;
+                }
+            }
+            catch (RuntimeException exc) {
+                if (lock.validate(stamp)) {
+                    throw exc;
+                }
+            }
+        }
+
+        // a writer was active; wait for it and read again under the lock
+        stamp = lock.readLock();
+        try {
+            return dictionary.findElement(key);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Inserts provided element into the Dictionary
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(K key, V element) {
+        long stamp = lock.writeLock();
+        try {
+            dictionary.insertElement(key, element);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Searches dictionary to determine if key is present, then
+     * removes and returns corresponding object
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public V removeElement(Object key) throws ElementNotFoundException {
+        long stamp = lock.writeLock();
+        try {
+            return dictionary.removeElement(key);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
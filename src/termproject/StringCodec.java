@@ -0,0 +1,40 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Encodes Strings as their UTF-8 byte count, in four bytes,
+ * followed by the UTF-8 bytes.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class StringCodec
+        implements Codec {
+
+    public int encodedSize(Object value) {
+        return 4 + ((String) value).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    public void encode(Object value, ByteBuffer out) {
+        byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    public Object decode(ByteBuffer in) {
+        int length = in.getInt();
+        if (in.hasArray()) {
+            // decode straight from the backing array, without a copy
+            String value = new String(in.array(), in.arrayOffset() + in.position(),
+                    length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -9,26 +9,48 @@ package termproject;
  * Summary of Modifications
  *      3 Dec 2009 - DMG - changed type for data stored in TFNode to Item
  *          and changed necessary methods to deal with Item instead of Object
- * Description: The basic node for a 2-4 tree.  Contains an array of Items,
- * an array of references to children TFNodes, a pointer to a parent TFNode,
- * and a count of how many Items are stored in the node.
+ *      keys and elements now stored in parallel arrays; the Item methods
+ *          remain and work through TFNodeItem views or copies
+ *      maximum number of items is set per node, so the same node serves
+ *          B-trees of any order
+ * Description: The basic node for a 2-4 tree.  Contains parallel arrays of
+ * keys and elements, an array of references to children TFNodes, a pointer
+ * to a parent TFNode, and a count of how many items are stored in the node.
  */
 
 public class TFNode {
 
-    private static final int MAX_ITEMS = 3;
+    private static final int DEFAULT_MAX_ITEMS = 3;
 
+    private final int maxItems;
     private int numItems = 0;
     private TFNode nodeParent;
+    // slot of this node in its parent's child array, kept current by the
+    // parent's setChild, insertEntry and removeEntry
+    private int parentIndex;
+    // items in this node and all its descendants; kept by TwoFourTree
+    private int subtreeSize;
     private TFNode[] nodeChildren;
-    // DMG 3 Dec 09 - changed type to Item
-    private Item[] nodeItems;
+    // keys and elements are stored in parallel arrays rather than as Items,
+    // so an entry costs no object of its own and a scan over the keys does
+    // not chase a pointer per comparison
+    private Object[] nodeKeys;
+    private Object[] nodeElements;
 
     public TFNode() {
+        this (DEFAULT_MAX_ITEMS);
+    }
+
+        // a node of a B-tree of order maxItems+1
+    public TFNode(int maxItems) {
+        if (maxItems < 2)
+            throw new TFNodeException("node must hold at least 2 items");
+        this.maxItems = maxItems;
             // make them one bigger than needed, so can handle oversize nodes
             // during inserts
-        nodeChildren = new TFNode[MAX_ITEMS+2];
-        nodeItems = new Item[MAX_ITEMS+1];
+        nodeChildren = new TFNode[maxItems+2];
+        nodeKeys = new Object[maxItems+1];
+        nodeElements = new Object[maxItems+1];
     }
 
     public int getNumItems () {
@@ -36,7 +58,7 @@ public class TFNode {
     }
 
     public int getMaxItems() {
-        return MAX_ITEMS;
+        return maxItems;
     }
 
     public TFNode getParent() {
@@ -45,36 +67,71 @@ public class TFNode {
     public void setParent (TFNode parent) {
         nodeParent = parent;
     }
+    public int getParentIndex() {
+        return parentIndex;
+    }
+    public int getSubtreeSize() {
+        return subtreeSize;
+    }
+    public void setSubtreeSize (int size) {
+        subtreeSize = size;
+    }
+    public Object getKey(int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        return nodeKeys[index];
+    }
+    public Object getElement(int index) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        return nodeElements[index];
+    }
+    public void setElement(int index, Object element) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        nodeElements[index] = element;
+    }
+        // returns a view of the entry at index; setKey and setElement on the
+        // view write through to this node
     public Item getItem(int index) {
         if ( (index < 0) || (index > (numItems-1) ) )
             throw new TFNodeException();
-        return nodeItems[index];
+        return new TFNodeItem(this, index);
     }
         // adds, but does not extend array; so it overwrites anything there
     public void addItem (int index, Item data) {
+        addEntry(index, data.key(), data.element());
+    }
+    public void addEntry (int index, Object key, Object element) {
             // always add at end+1; check that you are within array
-        if ( (index < 0) || (index > numItems) || (index > MAX_ITEMS) )
+        if ( (index < 0) || (index > numItems) || (index > maxItems) )
             throw new TFNodeException();
-        nodeItems[index] = data;
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
         numItems++;
     }
         // this function inserts an item into the node, and adjusts into child
         // pointers to add the proper corresponding pointer
     public void insertItem (int index, Item data) {
-        if ( (index < 0) || (index > numItems) || (index > MAX_ITEMS) )
+        insertEntry(index, data.key(), data.element());
+    }
+    public void insertEntry (int index, Object key, Object element) {
+        if ( (index < 0) || (index > numItems) || (index > maxItems) )
             throw new TFNodeException();
-            // adjust Items
+            // adjust entries
         for (int ind=numItems; ind > index; ind--) {
-            nodeItems[ind] = nodeItems[ind-1];
+            nodeKeys[ind] = nodeKeys[ind-1];
+            nodeElements[ind] = nodeElements[ind-1];
         }
             // insert new data into hole made
-        nodeItems[index] = data;
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
             // adjust children pointers; if inserting into index=1, we make
             // pointers 1 and 2 to point to 1; this is because whoever called
             // this function will fix one of them later; index 0 doesn't change;
             // pointer 3 becomes pointer 2; pointer 4 becomes 3, etc.
         for (int ind=numItems+1; ind > index; ind--) {
-            nodeChildren[ind] = nodeChildren[ind-1];
+            moveChild(ind-1, ind);
         }
 
         numItems++;
@@ -82,55 +139,113 @@ public class TFNode {
 
         // this method removes item, and shrinks array
     public Item removeItem (int index) {
+        Object key = getKey(index);
+        return new Item(key, removeEntry(index));
+    }
+    public Object removeEntry (int index) {
         if ( (index < 0) || (index > (numItems-1) ) )
             throw new TFNodeException();
-        Item removedItem = nodeItems[index];
+        Object removedElement = nodeElements[index];
 
         for (int ind=index; ind < numItems-1; ind++) {
-            nodeItems[ind] = nodeItems[ind+1];
+            nodeKeys[ind] = nodeKeys[ind+1];
+            nodeElements[ind] = nodeElements[ind+1];
         }
-        nodeItems[numItems-1] = null;
+        nodeKeys[numItems-1] = null;
+        nodeElements[numItems-1] = null;
             // fix children pointers also
             // typically, you wouldn't expect to do a removeItem unless
             // children are null, because removal of an item will mess up the
             // pointers; however, here we will simply delete the child to the
             // left of the removed item; i.e., the child with same index
         for (int ind=index; ind < numItems; ind++) {
-            nodeChildren[ind] = nodeChildren[ind+1];
+            moveChild(ind+1, ind);
         }
         nodeChildren[numItems] = null;
         numItems--;
-        return removedItem;
+        return removedElement;
     }
 
         // this method removes item, but does not shrink array
     public Item deleteItem (int index) {
+        Object key = getKey(index);
+        return new Item(key, deleteEntry(index));
+    }
+    public Object deleteEntry (int index) {
         if ( (index < 0) || (index > (numItems-1) ) )
             throw new TFNodeException();
-        Item removedItem = nodeItems[index];
-        nodeItems[index] = null;
+        Object removedElement = nodeElements[index];
+        nodeKeys[index] = null;
+        nodeElements[index] = null;
 
         numItems--;
-        return removedItem;
+        return removedElement;
     }
         // replaces Item at index with newItem, returning the old Item
     public Item replaceItem (int index, Item newItem) {
+        Object key = getKey(index);
+        return new Item(key, replaceEntry(index, newItem.key(), newItem.element()));
+    }
+        // replaces entry at index, returning the old element
+    public Object replaceEntry (int index, Object key, Object element) {
         if ( (index < 0) || (index > (numItems-1) ) )
             throw new TFNodeException();
-        Item returnItem = nodeItems[index];
+        Object returnElement = nodeElements[index];
 
-        nodeItems[index] = newItem;
-        return returnItem;
+        nodeKeys[index] = key;
+        nodeElements[index] = element;
+        return returnElement;
     }
 
     public TFNode getChild (int index) {
-        if ( (index < 0) || (index > (MAX_ITEMS+1)) )
+        if ( (index < 0) || (index > (maxItems+1)) )
             throw new TFNodeException();
         return nodeChildren[index];
     }
     public void setChild (int index, TFNode child) {
-        if ( (index < 0) || (index > (MAX_ITEMS+1)) )
+        if ( (index < 0) || (index > (maxItems+1)) )
             throw new TFNodeException();
+        TFNode old = nodeChildren[index];
+            // after an insertEntry shift the old child also sits in the slot
+            // next to this one; if it was recorded here, point it at that slot
+        if ( (old != null) && (old != child) && (old.parentIndex == index) ) {
+            if ( (index > 0) && (nodeChildren[index-1] == old) )
+                old.parentIndex = index-1;
+            else if ( (index < nodeChildren.length-1) && (nodeChildren[index+1] == old) )
+                old.parentIndex = index+1;
+        }
         nodeChildren[index] = child;
+        if (child != null)
+            child.parentIndex = index;
+    }
+
+        // moves a child between slots during a shift, keeping its index
+    private void moveChild (int from, int to) {
+        TFNode child = nodeChildren[from];
+        nodeChildren[to] = child;
+        if (child != null)
+            child.parentIndex = to;
+    }
+
+        // empties the node so a TFNodePool can hand it out again
+    void clear() {
+        for (int ind=0; ind < nodeKeys.length; ind++) {
+            nodeKeys[ind] = null;
+            nodeElements[ind] = null;
+        }
+        for (int ind=0; ind < nodeChildren.length; ind++) {
+            nodeChildren[ind] = null;
+        }
+        numItems = 0;
+        nodeParent = null;
+        parentIndex = 0;
+        subtreeSize = 0;
+    }
+
+        // package-private write-through access for TFNodeItem
+    void setKey(int index, Object key) {
+        if ( (index < 0) || (index > (numItems-1) ) )
+            throw new TFNodeException();
+        nodeKeys[index] = key;
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: An Item view of one entry of a TFNode.  Reads and writes go
+ * straight to the node's key and element arrays, so the Item API keeps
+ * working without the node storing an Item per entry.  The view refers to a
+ * slot, so it should not be held across inserts or removes on the node.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+class TFNodeItem extends Item {
+
+    private final TFNode itemNode;
+    private final int itemIndex;
+
+    TFNodeItem(TFNode node, int index) {
+        itemNode = node;
+        itemIndex = index;
+    }
+
+    public Object key() {
+        return itemNode.getKey(itemIndex);
+    }
+    public void setKey(Object key) {
+        itemNode.setKey(itemIndex, key);
+    }
+    public Object element() {
+        return itemNode.getElement(itemIndex);
+    }
+    public void setElement (Object element) {
+        itemNode.setElement(itemIndex, element);
+    }
+}
@@ -0,0 +1,54 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A free list of TFNodes for one tree.  Splits take nodes from
+ * the pool and fusions give them back, so a tree under steady insert and
+ * remove churn stops allocating nodes once the pool has warmed up.  The
+ * pool keeps at most a fixed number of nodes; any beyond that are left to
+ * the garbage collector.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+class TFNodePool {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final int maxItems;
+    private final TFNode[] freeNodes;
+    private int numFree = 0;
+
+    TFNodePool(int maxItems) {
+        this (maxItems, DEFAULT_CAPACITY);
+    }
+
+    TFNodePool(int maxItems, int capacity) {
+        this.maxItems = maxItems;
+        freeNodes = new TFNode[capacity];
+    }
+
+    /**
+     * Returns an empty node, reusing a freed one when there is one.
+     * @return empty node with no parent
+     */
+    TFNode acquire() {
+        if (numFree == 0) {
+            return new TFNode(maxItems);
+        }
+        TFNode node = freeNodes[--numFree];
+        freeNodes[numFree] = null;
+        return node;
+    }
+
+    /**
+     * Gives a node that is no longer in the tree back to the pool.
+     * @param node node to free; must not be referenced by the tree
+     */
+    void release(TFNode node) {
+        if (numFree < freeNodes.length) {
+            node.clear();
+            freeNodes[numFree++] = node;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package termproject;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Walks the items of a TwoFourTree in key order, optionally
+ * limited to a range of keys.  The cursor keeps the path from the root to
+ * the next item on a stack of TFNodes and indexes, so it streams the items
+ * without copying them anywhere and needs only as much memory as the tree
+ * is high.  The tree's map views also walk ranges of ranks, in either
+ * direction.
+ *
+ * getKey and getElement read the next item without moving past it or
+ * allocating anything; next returns it as an Item and moves past it.  The
+ * tree must not be changed while a cursor is in use: the cursor is
+ * fail-fast, and throws ConcurrentModificationException once it has.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class TreeCursor
+        implements Iterator<Item> {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final TwoFourTree<?,?> tree;
+    private final int expectedModCount;
+    private final Comparator treeComp;
+    // keys from here on are past the end; null for no limit
+    private final Object highKey;
+    // items left to visit, or -1 for no limit
+    private int remaining = -1;
+    // true to visit items from the largest key down
+    private final boolean descending;
+    private TFNode[] stackNodes = new TFNode[INITIAL_DEPTH];
+    private int[] stackIndexes = new int[INITIAL_DEPTH];
+    private int depth = 0;
+
+    /**
+     * Creates a cursor over the items under root whose keys are at least
+     * lowKey and less than highKey.
+     * @param tree tree walked
+     * @param root root of the tree, or null if it is empty
+     * @param search search to use for the first item
+     * @param comp comparator for keys
+     * @param lowKey smallest key to include; null for no limit
+     * @param highKey first key to exclude; null for no limit
+     */
+    TreeCursor(TwoFourTree<?,?> tree, TFNode root, NodeSearch search, Comparator comp,
+            Object lowKey, Object highKey) {
+        this.tree = tree;
+        expectedModCount = tree.getModCount();
+        treeComp = comp;
+        this.highKey = highKey;
+        descending = false;
+
+        // go down to the first item not less than lowKey; every node on the
+        // way is left at the item to visit once its child is done
+        TFNode node = root;
+        while (node != null) {
+            int index = (lowKey == null) ? 0 : search.FFGTE(node, lowKey, comp);
+            push(node, index);
+            node = node.getChild(index);
+        }
+        settle();
+    }
+
+    /**
+     * Creates a cursor over count items under root, starting from the item
+     * of the given rank and going up or down in key order.  Ranks come from
+     * the subtree sizes, as in TwoFourTree.select.
+     * @param tree tree walked
+     * @param root root of the tree, or null if it is empty
+     * @param rank rank of the first item; ignored if count is 0
+     * @param count number of items to visit; there must be that many
+     * @param descending true to visit items from larger keys to smaller
+     */
+    TreeCursor(TwoFourTree<?,?> tree, TFNode root, int rank, int count, boolean descending) {
+        this.tree = tree;
+        expectedModCount = tree.getModCount();
+        treeComp = null;
+        highKey = null;
+        this.descending = descending;
+        if (count <= 0) {
+            return;
+        }
+        remaining = count;
+
+        // go down as select does; every node on the way is left at the item
+        // to visit once the child gone into is done, which going down is
+        // the item left of that child
+        TFNode node = root;
+        while (true) {
+            int index = 0;
+            TFNode child = node.getChild(0);
+            while (true) {
+                int childSize = (child == null) ? 0 : child.getSubtreeSize();
+                if (rank < childSize) {
+                    break;
+                }
+                rank -= childSize;
+                if (rank == 0) {
+                    push(node, index);
+                    return;
+                }
+                rank--;
+                index++;
+                child = node.getChild(index);
+            }
+            push(node, descending ? index-1 : index);
+            node = child;
+        }
+    }
+
+    public boolean hasNext() {
+        return (depth > 0);
+    }
+
+    /**
+     * @return key of the next item
+     * @exception NoSuchElementException if there are no more items
+     * @exception ConcurrentModificationException if the tree has changed
+     */
+    public Object getKey() {
+        checkForComodification();
+        if (depth == 0)
+            throw new NoSuchElementException();
+        return stackNodes[depth-1].getKey(stackIndexes[depth-1]);
+    }
+
+    /**
+     * @return element of the next item
+     * @exception NoSuchElementException if there are no more items
+     * @exception ConcurrentModificationException if the tree has changed
+     */
+    public Object getElement() {
+        checkForComodification();
+        if (depth == 0)
+            throw new NoSuchElementException();
+        return stackNodes[depth-1].getElement(stackIndexes[depth-1]);
+    }
+
+    /**
+     * Moves past the next item.
+     * @exception NoSuchElementException if there are no more items
+     * @exception ConcurrentModificationException if the tree has changed
+     */
+    public void advance() {
+        checkForComodification();
+        if (depth == 0)
+            throw new NoSuchElementException();
+        if ( (remaining > 0) && (--remaining == 0) ) {
+            while (depth > 0) {
+                stackNodes[--depth] = null;
+            }
+            return;
+        }
+        if (descending) {
+            // the item's predecessor is the rightmost item left of it, if
+            // the node has children, else the next item up the stack
+            int index = stackIndexes[depth-1]--;
+            TFNode node = stackNodes[depth-1].getChild(index);
+            while (node != null) {
+                push(node, node.getNumItems()-1);
+                node = node.getChild(node.getNumItems());
+            }
+            settle();
+            return;
+        }
+        // the item's successor is the leftmost item right of it, if the
+        // node has children, else the next item up the stack
+        int index = ++stackIndexes[depth-1];
+        TFNode node = stackNodes[depth-1].getChild(index);
+        while (node != null) {
+            push(node, 0);
+            node = node.getChild(0);
+        }
+        settle();
+    }
+
+    /**
+     * @return the next item, as a new Item
+     * @exception NoSuchElementException if there are no more items
+     */
+    public Item next() {
+        Item item = new Item(getKey(), getElement());
+        advance();
+        return item;
+    }
+
+        // pops nodes whose items are all visited, then ends the walk if the
+        // next item is past highKey
+    private void settle() {
+        while ( (depth > 0) && ( (stackIndexes[depth-1] == stackNodes[depth-1].getNumItems())
+                || (stackIndexes[depth-1] < 0) ) ) {
+            stackNodes[--depth] = null;
+        }
+        if ( (depth > 0) && (highKey != null) && (treeComp.compare(getKey(), highKey) >= 0) ) {
+            while (depth > 0) {
+                stackNodes[--depth] = null;
+            }
+        }
+    }
+
+    private void checkForComodification() {
+        if (tree.getModCount() != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    private void push(TFNode node, int index) {
+        if (depth == stackNodes.length) {
+            stackNodes = Arrays.copyOf(stackNodes, 2*depth);
+            stackIndexes = Arrays.copyOf(stackIndexes, 2*depth);
+        }
+        stackNodes[depth] = node;
+        stackIndexes[depth] = index;
+        depth++;
+    }
+}
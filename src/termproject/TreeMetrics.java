@@ -0,0 +1,190 @@
+package termproject;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Counts what a TwoFourTree does to its nodes (searches,
+ * splits, transfers, fusions, successor swaps and changes of height) and
+ * records the latency of each findElement, insertElement and removeElement.
+ * A tree records nothing until it is given a TreeMetrics with setMetrics;
+ * until then each hook costs the tree one null check.
+ *
+ * The numbers can be read through the getters, or through JMX once
+ * register has been called.  Several trees may share one TreeMetrics, and
+ * a tree read by several threads at once, as under a StampedDictionary,
+ * may record into it concurrently.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class TreeMetrics
+        implements TreeMetricsMXBean {
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder splits = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder fusions = new LongAdder();
+    private final LongAdder successorSwaps = new LongAdder();
+    private final LongAdder rootGrowths = new LongAdder();
+    private final LongAdder rootShrinks = new LongAdder();
+    private final LatencyHistogram findLatency = new LatencyHistogram();
+    private final LatencyHistogram insertLatency = new LatencyHistogram();
+    private final LatencyHistogram removeLatency = new LatencyHistogram();
+    private ObjectName registeredName;
+
+    void searched() {
+        searches.increment();
+    }
+
+    void split() {
+        splits.increment();
+    }
+
+    void transferred() {
+        transfers.increment();
+    }
+
+    void fused() {
+        fusions.increment();
+    }
+
+    void swappedSuccessor() {
+        successorSwaps.increment();
+    }
+
+    void rootGrew() {
+        rootGrowths.increment();
+    }
+
+    void rootShrank() {
+        rootShrinks.increment();
+    }
+
+    void found(long nanos) {
+        findLatency.record(nanos);
+    }
+
+    void inserted(long nanos) {
+        insertLatency.record(nanos);
+    }
+
+    void removed(long nanos) {
+        removeLatency.record(nanos);
+    }
+
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    public long getSplits() {
+        return splits.sum();
+    }
+
+    public long getTransfers() {
+        return transfers.sum();
+    }
+
+    public long getFusions() {
+        return fusions.sum();
+    }
+
+    public long getSuccessorSwaps() {
+        return successorSwaps.sum();
+    }
+
+    public long getRootGrowths() {
+        return rootGrowths.sum();
+    }
+
+    public long getRootShrinks() {
+        return rootShrinks.sum();
+    }
+
+    public LatencyHistogram getFindHistogram() {
+        return findLatency;
+    }
+
+    public LatencyHistogram getInsertHistogram() {
+        return insertLatency;
+    }
+
+    public LatencyHistogram getRemoveHistogram() {
+        return removeLatency;
+    }
+
+    public Map<String, Long> getFindLatency() {
+        return summary(findLatency);
+    }
+
+    public Map<String, Long> getInsertLatency() {
+        return summary(insertLatency);
+    }
+
+    public Map<String, Long> getRemoveLatency() {
+        return summary(removeLatency);
+    }
+
+    public void reset() {
+        searches.reset();
+        splits.reset();
+        transfers.reset();
+        fusions.reset();
+        successorSwaps.reset();
+        rootGrowths.reset();
+        rootShrinks.reset();
+        findLatency.reset();
+        insertLatency.reset();
+        removeLatency.reset();
+    }
+
+    /**
+     * Makes these metrics visible through the platform MBean server as
+     * termproject:type=TreeMetrics,name=the given name.
+     * @param name name that tells this tree from others
+     */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName("termproject:type=TreeMetrics,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (registeredName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+
+    public String toString() {
+        return "searches=" + getSearches() + " splits=" + getSplits()
+                + " transfers=" + getTransfers() + " fusions=" + getFusions()
+                + " successorSwaps=" + getSuccessorSwaps()
+                + " rootGrowths=" + getRootGrowths() + " rootShrinks=" + getRootShrinks()
+                + "\n  find:   " + findLatency
+                + "\n  insert: " + insertLatency
+                + "\n  remove: " + removeLatency;
+    }
+
+    private static Map<String, Long> summary(LatencyHistogram histogram) {
+        Map<String, Long> summary = new LinkedHashMap<String, Long>();
+        summary.put("count", histogram.getCount());
+        summary.put("mean", Math.round(histogram.getMean()));
+        summary.put("p50", histogram.getValueAtPercentile(50));
+        summary.put("p90", histogram.getValueAtPercentile(90));
+        summary.put("p99", histogram.getValueAtPercentile(99));
+        summary.put("p99.9", histogram.getValueAtPercentile(99.9));
+        summary.put("max", histogram.getMax());
+        return summary;
+    }
+}
@@ -0,0 +1,37 @@
+package termproject;
+
+import java.util.Map;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: What TreeMetrics shows through JMX.  Latencies are maps
+ * from "count", "mean", "p50", "p90", "p99", "p99.9" and "max" to
+ * nanoseconds, except count.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public interface TreeMetricsMXBean {
+
+    public long getSearches ();
+
+    public long getSplits ();
+
+    public long getTransfers ();
+
+    public long getFusions ();
+
+    public long getSuccessorSwaps ();
+
+    public long getRootGrowths ();
+
+    public long getRootShrinks ();
+
+    public Map<String, Long> getFindLatency ();
+
+    public Map<String, Long> getInsertLatency ();
+
+    public Map<String, Long> getRemoveLatency ();
+
+    public void reset ();
+}
@@ -0,0 +1,537 @@
+package termproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Writes the items of a TwoFourTree to a channel in a compact
+ * binary form and loads them back, for fast restarts and for copying a
+ * tree to another machine.
+ *
+ * A snapshot is a header (magic number, version, flags and item count as
+ * a varint), the items in key order, and a CRC-32 of everything before
+ * it.  When the key codec is an IntegralCodec each key is stored as a
+ * zigzag varint of its difference from the previous key; otherwise it is
+ * a varint length and the codec's bytes.  Each element is a varint of its
+ * encoded length plus one, with 0 for null, and the codec's bytes.
+ *
+ * Both directions stream through a fixed buffer, so a snapshot of any size
+ * needs only as much memory as its largest item.  Loading leaves the
+ * channel just past the snapshot, so a snapshot can be followed by other
+ * data: a seekable channel is read ahead a buffer at a time and moved back
+ * over what was not used, and any other channel is read only as far as
+ * each field needs.  Loading feeds the items
+ * straight into TwoFourTree.bulkLoad, which builds the tree in linear time
+ * without a single split; a snapshot that is cut short or fails its
+ * checksum leaves the tree empty.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x32345331;
+    private static final byte VERSION = 1;
+    private static final byte DELTA_KEYS = 1;
+    // magic number, version and flags, before the item count
+    private static final int FIXED_HEADER_SIZE = 4 + 1 + 1;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private TreeSnapshot() {
+    }
+
+    /**
+     * Writes every item of a tree to a channel.
+     * @param tree tree to write; it must not change meanwhile
+     * @param out channel to write to; it is left open
+     * @param keyCodec codec for keys; an IntegralCodec gets delta encoding
+     * @param elementCodec codec for non-null elements
+     * @return number of bytes written
+     */
+    public static long write(TwoFourTree<?,?> tree, WritableByteChannel out,
+            Codec keyCodec, Codec elementCodec) throws IOException {
+        IntegralCodec deltaCodec = (keyCodec instanceof IntegralCodec)
+                ? (IntegralCodec) keyCodec : null;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CRC32 checksum = new CRC32();
+        long written = 0;
+
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((deltaCodec != null) ? DELTA_KEYS : 0);
+        Varint.putUnsigned(tree.size(), buffer);
+
+        long previous = 0;
+        for (TreeCursor cursor = tree.iterator(); cursor.hasNext(); cursor.advance()) {
+            Object key = cursor.getKey();
+            Object element = cursor.getElement();
+            int keySize = (deltaCodec != null) ? Varint.MAX_SIZE
+                    : Varint.MAX_SIZE + keyCodec.encodedSize(key);
+            int elementSize = (element == null) ? 0 : elementCodec.encodedSize(element);
+            int needed = keySize + Varint.MAX_SIZE + elementSize;
+
+            if (buffer.remaining() < needed) {
+                written += drain(buffer, out, checksum);
+                if (buffer.capacity() < needed) {
+                    buffer = ByteBuffer.allocate(needed);
+                }
+            }
+            if (deltaCodec != null) {
+                long value = deltaCodec.toLong(key);
+                Varint.putSigned(value - previous, buffer);
+                previous = value;
+            }
+            else {
+                Varint.putUnsigned(keyCodec.encodedSize(key), buffer);
+                keyCodec.encode(key, buffer);
+            }
+            if (element == null) {
+                Varint.putUnsigned(0, buffer);
+            }
+            else {
+                Varint.putUnsigned(elementSize + 1L, buffer);
+                elementCodec.encode(element, buffer);
+            }
+        }
+
+        written += drain(buffer, out, checksum);
+        buffer.putInt((int) checksum.getValue());
+        written += drain(buffer, out, null);
+        return written;
+    }
+
+    /**
+     * Loads a snapshot into an empty tree, with nodes as full as they can
+     * be.
+     * @return number of items loaded
+     */
+    public static int read(ReadableByteChannel in, TwoFourTree<?,?> tree,
+            Codec keyCodec, Codec elementCodec) throws IOException {
+        return read(in, tree, keyCodec, elementCodec, 1.0);
+    }
+
+    /**
+     * Loads a snapshot into an empty tree.
+     * @param in channel positioned at the snapshot; it is left open, just
+     * past the snapshot once the load succeeds
+     * @param tree empty tree to load, with the order of keys the snapshot
+     * was written in
+     * @param keyCodec codec the keys were written with
+     * @param elementCodec codec the elements were written with
+     * @param fillFactor fraction of each node to fill; see
+     * TwoFourTree.bulkLoad
+     * @return number of items loaded
+     * @exception IOException if the snapshot is damaged or cut short, or
+     * its keys are out of order for the tree's comparator
+     * @exception TwoFourTreeException if the tree is not empty
+     */
+    public static int read(ReadableByteChannel in, TwoFourTree<?,?> tree,
+            Codec keyCodec, Codec elementCodec, double fillFactor) throws IOException {
+        if (!tree.isEmpty()) {
+            throw new TwoFourTreeException("snapshot load needs an empty tree");
+        }
+        SnapshotReader reader = new SnapshotReader(in, keyCodec, elementCodec);
+        try {
+            tree.bulkLoad(reader, reader.count, fillFactor);
+        }
+        catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+        catch (TwoFourTreeException exc) {
+            // the keys were written in order, so they were damaged on the
+            // way or this tree orders them differently
+            throw new IOException("snapshot keys out of order", exc);
+        }
+        return reader.count;
+    }
+
+    // writes out and empties the buffer, adding what it held to checksum
+    private static long drain(ByteBuffer buffer, WritableByteChannel out,
+            CRC32 checksum) throws IOException {
+        buffer.flip();
+        int bytes = buffer.remaining();
+        if (checksum != null) {
+            checksum.update(buffer.array(), buffer.arrayOffset(), bytes);
+        }
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    /**
+     * Hands bulkLoad the items of a snapshot one at a time, reading the
+     * channel as it goes and checking the trailing checksum as it hands
+     * over the last item, so a damaged snapshot stops the load before the
+     * tree takes the new nodes.
+     */
+    private static final class SnapshotReader
+            implements Iterator<Item> {
+
+        private final ReadableByteChannel in;
+        // in, if it can be moved back over bytes read ahead; else null
+        private final SeekableByteChannel seekable;
+        private final Codec keyCodec;
+        private final Codec elementCodec;
+        private final IntegralCodec deltaCodec;
+        private final CRC32 checksum = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final int count;
+        private int remaining;
+        private long previous = 0;
+
+        SnapshotReader(ReadableByteChannel in, Codec keyCodec, Codec elementCodec)
+                throws IOException {
+            this.in = in;
+            seekable = (in instanceof SeekableByteChannel) ? (SeekableByteChannel) in : null;
+            this.keyCodec = keyCodec;
+            this.elementCodec = elementCodec;
+            // nothing read yet
+            buffer.limit(0);
+
+            fill(FIXED_HEADER_SIZE, false);
+            if (buffer.remaining() < FIXED_HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("not a tree snapshot");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("unknown snapshot version " + version);
+            }
+            boolean deltaKeys = (buffer.get() & DELTA_KEYS) != 0;
+            if (deltaKeys && !(keyCodec instanceof IntegralCodec)) {
+                throw new IOException("snapshot keys need an IntegralCodec");
+            }
+            deltaCodec = deltaKeys ? (IntegralCodec) keyCodec : null;
+            fillVarint();
+            long items = Varint.getUnsigned(buffer);
+            if (items > Integer.MAX_VALUE) {
+                throw new IOException("snapshot holds " + items + " items");
+            }
+            count = (int) items;
+            remaining = count;
+            // next never runs for an empty snapshot, so check it here
+            if (count == 0) {
+                finish();
+            }
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public Item next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Object key;
+                fillVarint();
+                if (deltaCodec != null) {
+                    previous += Varint.getSigned(buffer);
+                    key = deltaCodec.fromLong(previous);
+                }
+                else {
+                    key = decode(keyCodec, (int) Varint.getUnsigned(buffer));
+                }
+                fillVarint();
+                int elementSize = (int) Varint.getUnsigned(buffer);
+                Object element = (elementSize == 0) ? null : decode(elementCodec, elementSize - 1);
+
+                if (--remaining == 0) {
+                    finish();
+                }
+                return new Item(key, element);
+            }
+            catch (IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+        }
+
+        /**
+         * Checks the trailing checksum, then moves a seekable channel back
+         * over the bytes read past it.
+         */
+        private void finish() throws IOException {
+            // fill checksums what it drops, so what is left to add is the
+            // part of the buffer read since
+            fill(4, true);
+            checksum.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+            if (buffer.getInt() != (int) checksum.getValue()) {
+                throw new IOException("snapshot checksum does not match");
+            }
+            if (seekable != null && buffer.hasRemaining()) {
+                seekable.position(seekable.position() - buffer.remaining());
+                buffer.limit(buffer.position());
+            }
+        }
+
+        /**
+         * Makes sure the buffer holds a whole varint.  A channel that cannot
+         * be moved back is read a byte at a time up to the varint's last
+         * byte, so nothing past the snapshot is ever read from it.
+         */
+        private void fillVarint() throws IOException {
+            if (seekable != null) {
+                fill(Varint.MAX_SIZE, false);
+                return;
+            }
+            int size = 1;
+            while (true) {
+                fill(size, true);
+                if ((buffer.get(buffer.position() + size - 1) & 0x80) == 0 || size == Varint.MAX_SIZE) {
+                    return;
+                }
+                size++;
+            }
+        }
+
+        private Object decode(Codec codec, int size) throws IOException {
+            fill(size, true);
+            int end = buffer.position() + size;
+            Object value = codec.decode(buffer);
+            buffer.position(end);
+            return value;
+        }
+
+        /**
+         * Makes sure the buffer holds at least the given number of unread
+         * bytes, reading more from the channel if it must.  A seekable
+         * channel is read as far as the buffer holds; any other only as far
+         * as needed.
+         * @param exact true if the bytes must all be there; false if fewer
+         * will do at the end of the channel, as for a varint of unknown
+         * length
+         */
+        private void fill(int size, boolean exact) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            // bytes already read are done with: checksum them and drop them
+            checksum.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.compact();
+            if (buffer.capacity() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(size);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            if (seekable == null) {
+                buffer.limit(size);
+            }
+            while (buffer.position() < size) {
+                if (in.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() < size && (exact || buffer.remaining() == 0)) {
+                throw new IOException("snapshot is cut short");
+            }
+        }
+    }
+
+    /**
+     * Self-test: a round trip through a file with delta-encoded keys, the
+     * size of the snapshot against fixed-width keys and the time to load it
+     * against inserting the items, a damaged snapshot, and a round trip with
+     * length-prefixed keys and an element bigger than the buffer.
+     */
+    public static void main(String[] args) throws IOException {
+        final int TEST_SIZE = 1000000;
+        Random rng = new Random(7);
+        TwoFourTree<Object,Object> tree = new TwoFourTree<Object,Object>(new IntegerComparator());
+        Integer[] keys = new Integer[TEST_SIZE];
+        Integer[] elements = new Integer[TEST_SIZE];
+        for (int i = 0, key = 0; i < TEST_SIZE; i++) {
+            key += rng.nextInt(100);
+            keys[i] = key;
+            elements[i] = (i % 10 == 0) ? null : i;
+        }
+        tree.bulkLoad(keys, elements, 1.0);
+
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        long bytes;
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            bytes = write(tree, out, new IntegerCodec(), new IntegerCodec());
+        }
+        System.out.println("snapshot of " + TEST_SIZE + " items: " + bytes + " bytes, "
+                + (TEST_SIZE * 9L) + " with fixed-width keys");
+
+        for (int run = 0; run < 3; run++) {
+            TwoFourTree<Object,Object> loaded = new TwoFourTree<Object,Object>(new IntegerComparator());
+            long startTime = System.nanoTime();
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                read(in, loaded, new IntegerCodec(), new IntegerCodec());
+            }
+            long loadTime = System.nanoTime() - startTime;
+
+            TwoFourTree<Object,Object> inserted = new TwoFourTree<Object,Object>(new IntegerComparator());
+            startTime = System.nanoTime();
+            for (int i = 0; i < TEST_SIZE; i++) {
+                inserted.insertElement(keys[i], elements[i]);
+            }
+            long insertTime = System.nanoTime() - startTime;
+            System.out.println("load " + loadTime / 1000000 + " ms, inserts "
+                    + insertTime / 1000000 + " ms");
+
+            if (run == 0) {
+                TreeCursor expected = tree.iterator();
+                for (TreeCursor actual = loaded.iterator(); actual.hasNext(); actual.advance()) {
+                    if (!actual.getKey().equals(expected.getKey())
+                            || (actual.getElement() == null
+                                ? expected.getElement() != null
+                                : !actual.getElement().equals(expected.getElement()))) {
+                        throw new TwoFourTreeException("main: loaded " + actual.getKey()
+                                + " but wrote " + expected.getKey());
+                    }
+                    expected.advance();
+                }
+                if (expected.hasNext() || loaded.size() != TEST_SIZE) {
+                    throw new TwoFourTreeException("main: loaded " + loaded.size() + " items");
+                }
+                loaded.checkTree();
+            }
+        }
+        System.out.println("test 1: integer keys done");
+
+        // flip one bit of the last element, which only the checksum catches
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer oneByte = ByteBuffer.allocate(1);
+            long position = channel.size() - 5;
+            channel.read(oneByte, position);
+            oneByte.put(0, (byte) (oneByte.get(0) ^ 0x10));
+            oneByte.rewind();
+            channel.write(oneByte, position);
+        }
+        TwoFourTree<Object,Object> damaged = new TwoFourTree<Object,Object>(new IntegerComparator());
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read(in, damaged, new IntegerCodec(), new IntegerCodec());
+            throw new TwoFourTreeException("main: loaded a damaged snapshot");
+        }
+        catch (IOException exc) {
+            System.out.println("damaged snapshot: " + exc.getMessage());
+        }
+        if (!damaged.isEmpty()) {
+            throw new TwoFourTreeException("main: damaged snapshot left items behind");
+        }
+        System.out.println("test 2: damaged snapshot done");
+
+        // keys written with their length and bytes, and an element bigger
+        // than the buffer
+        final IntegerCodec integers = new IntegerCodec();
+        Codec plainKeys = new Codec() {
+            public int encodedSize(Object value) {
+                return integers.encodedSize(value);
+            }
+            public void encode(Object value, ByteBuffer out) {
+                integers.encode(value, out);
+            }
+            public Object decode(ByteBuffer in) {
+                return integers.decode(in);
+            }
+        };
+        StringBuilder longElement = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            longElement.append((char) ('a' + i % 26));
+        }
+        TwoFourTree<Object,Object> strings = new TwoFourTree<Object,Object>(new IntegerComparator(), 8);
+        strings.insertElement(-1, longElement.toString());
+        for (int i = 0; i < 10000; i++) {
+            strings.insertElement(rng.nextInt(5000), (i % 3 == 0) ? null : "element " + i);
+        }
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(strings, out, plainKeys, new StringCodec());
+        }
+        TwoFourTree<Object,Object> loadedStrings = new TwoFourTree<Object,Object>(new IntegerComparator(), 8);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read(in, loadedStrings, plainKeys, new StringCodec(), 0.5);
+        }
+        if (loadedStrings.size() != strings.size()
+                || !longElement.toString().equals(loadedStrings.findElement(-1))) {
+            throw new TwoFourTreeException("main: string snapshot gave " + loadedStrings.size()
+                    + " items, not " + strings.size());
+        }
+        loadedStrings.checkTree();
+        System.out.println("test 3: length-prefixed keys done");
+
+        // two snapshots and trailing bytes in one file, read back through
+        // the file and through a stream that cannot be moved back
+        byte[] trailer = new byte[1000];
+        rng.nextBytes(trailer);
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(strings, out, plainKeys, new StringCodec());
+            write(tree, out, new IntegerCodec(), new IntegerCodec());
+            out.write(ByteBuffer.wrap(trailer));
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ReadableByteChannel in = (pass == 0) ? channel
+                        : Channels.newChannel(Channels.newInputStream(channel));
+                TwoFourTree<Object,Object> first = new TwoFourTree<Object,Object>(new IntegerComparator());
+                TwoFourTree<Object,Object> second = new TwoFourTree<Object,Object>(new IntegerComparator());
+                read(in, first, plainKeys, new StringCodec());
+                read(in, second, new IntegerCodec(), new IntegerCodec());
+                ByteBuffer rest = ByteBuffer.allocate(trailer.length + 1);
+                while (rest.hasRemaining() && in.read(rest) >= 0) {
+                    // read to the end
+                }
+                rest.flip();
+                if (first.size() != strings.size() || second.size() != tree.size()
+                        || !rest.equals(ByteBuffer.wrap(trailer))) {
+                    throw new TwoFourTreeException("main: snapshots in one stream gave "
+                            + first.size() + ", " + second.size() + " items and "
+                            + rest.remaining() + " bytes after");
+                }
+            }
+        }
+        System.out.println("test 4: snapshots followed by other data done");
+
+        // an empty snapshot still has its checksum checked
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(new TwoFourTree<Object,Object>(new IntegerComparator()), out,
+                    new IntegerCodec(), new IntegerCodec());
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (read(in, new TwoFourTree<Object,Object>(new IntegerComparator()),
+                    new IntegerCodec(), new IntegerCodec()) != 0 || in.position() != in.size()) {
+                throw new TwoFourTreeException("main: empty snapshot read wrong");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer oneByte = ByteBuffer.allocate(1);
+            channel.read(oneByte, 5);
+            oneByte.put(0, (byte) (oneByte.get(0) ^ 0x02));
+            oneByte.rewind();
+            channel.write(oneByte, 5);
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read(in, new TwoFourTree<Object,Object>(new IntegerComparator()),
+                    new IntegerCodec(), new IntegerCodec());
+            throw new TwoFourTreeException("main: loaded a damaged empty snapshot");
+        }
+        catch (IOException exc) {
+            System.out.println("damaged empty snapshot: " + exc.getMessage());
+        }
+        System.out.println("test 5: empty snapshot done");
+    }
+}
@@ -0,0 +1,213 @@
+package termproject;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A dictionary that allows many elements per key but keeps
+ * only one item per distinct key in its TwoFourTree.  Where a TwoFourTree
+ * inserts a duplicate key as another item, this appends the element to the
+ * key's value list, so heavily repeated keys make the tree neither taller
+ * nor wider.  Removing a key pops the element inserted under it last.
+ *
+ * A key with a single element stores that element directly; a value list
+ * is made when a second element arrives, or for a null element, so that
+ * the tree's null for a missing key stays unambiguous.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class TwoFourMultimap
+        implements Dictionary<Object,Object> {
+
+    private static final Object[] NO_ELEMENTS = new Object[0];
+
+    private final TwoFourTree<Object,Object> tree;
+    private int size = 0;
+
+    public TwoFourMultimap(Comparator comp) {
+        tree = new TwoFourTree<Object,Object>(comp);
+    }
+
+    /**
+     * @param comp comparator for keys
+     * @param order order of the underlying B-tree; at least 3
+     */
+    public TwoFourMultimap(Comparator comp, int order) {
+        tree = new TwoFourTree<Object,Object>(comp, order);
+    }
+
+    /**
+     * @return number of elements, counting every element of every key
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    /**
+     * @return number of distinct keys
+     */
+    public int keyCount() {
+        return tree.size();
+    }
+
+    /**
+     * Searches dictionary to determine if key is present
+     * @param key to be searched for
+     * @return the element removeElement would return for key; null if not
+     * found
+     */
+    public Object findElement(Object key) {
+        if (tree.isEmpty()) {
+            return null;
+        }
+        Object stored = tree.findElement(key);
+        if (stored instanceof ValueList) {
+            return ((ValueList) stored).last();
+        }
+        return stored;
+    }
+
+    /**
+     * @param key to be searched for
+     * @return all elements stored under key, oldest first; empty if none
+     */
+    public Object[] findAll(Object key) {
+        if (tree.isEmpty()) {
+            return NO_ELEMENTS;
+        }
+        Object stored = tree.findElement(key);
+        if (stored == null) {
+            return NO_ELEMENTS;
+        }
+        if (stored instanceof ValueList) {
+            return ((ValueList) stored).toArray();
+        }
+        return new Object[] {stored};
+    }
+
+    /**
+     * @param key to be searched for
+     * @return number of elements stored under key
+     */
+    public int count(Object key) {
+        if (tree.isEmpty()) {
+            return 0;
+        }
+        Object stored = tree.findElement(key);
+        if (stored instanceof ValueList) {
+            return ((ValueList) stored).size();
+        }
+        return (stored == null) ? 0 : 1;
+    }
+
+    /**
+     * Inserts provided element into the Dictionary, after any elements
+     * already stored under key
+     * @param key of object to be inserted
+     * @param element to be inserted
+     */
+    public void insertElement(Object key, Object element) {
+        Object stored = tree.isEmpty() ? null : tree.findElement(key);
+        if (stored == null) {
+            tree.insertElement(key, (element == null) ? new ValueList(null) : element);
+        }
+        else if (stored instanceof ValueList) {
+            ((ValueList) stored).add(element);
+        }
+        else {
+            tree.replaceElement(key, new ValueList(stored, element));
+        }
+        size++;
+    }
+
+    /**
+     * Removes and returns the element inserted under key most recently; the
+     * key leaves the tree with its last element
+     * @param key of data to be removed
+     * @return object corresponding to key
+     * @exception ElementNotFoundException if the key is not in dictionary
+     */
+    public Object removeElement(Object key) throws ElementNotFoundException {
+        Object stored = tree.isEmpty() ? null : tree.findElement(key);
+        if (stored == null) {
+            throw new ElementNotFoundException("key is not in tree: " + key);
+        }
+        Object element = stored;
+        if (stored instanceof ValueList) {
+            ValueList values = (ValueList) stored;
+            element = values.pop();
+            if (values.size() > 0) {
+                size--;
+                return element;
+            }
+        }
+        tree.removeElement(key);
+        size--;
+        return element;
+    }
+
+    /**
+     * Self-test: the extreme duplicate test of TwoFourTree, which here
+     * leaves a single item in the tree, then random keys with heavy skew.
+     */
+    public static void main(String[] args) {
+        Comparator myComp = new IntegerComparator();
+        TwoFourMultimap myMap = new TwoFourMultimap(myComp);
+        int testSize = 1000;
+        for (int i = 0; i < testSize; i++) {
+            myMap.insertElement(0, i);
+        }
+        if (myMap.keyCount() != 1 || myMap.size() != testSize || myMap.count(0) != testSize) {
+            throw new TwoFourTreeException("main: " + myMap.keyCount() + " keys, "
+                    + myMap.size() + " elements");
+        }
+        for (int i = testSize - 1; i >= 0; i--) {
+            int out = (int)myMap.removeElement(0);
+            if (out != i) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out + " ; " + i);
+            }
+        }
+        if (!myMap.isEmpty() || myMap.keyCount() != 0 || myMap.findElement(0) != null) {
+            throw new TwoFourTreeException("main: map not empty");
+        }
+        System.out.println("test 1: extreme duplicate test done");
+
+        java.util.Random rng = new java.util.Random(1);
+        int[] counts = new int[100];
+        for (int i = 0; i < 100000; i++) {
+            // key k is drawn about twice as often as key k + 1
+            int j = Math.min(99, Integer.numberOfTrailingZeros(rng.nextInt() | (1 << 30)));
+            if (counts[j] > 0 && rng.nextInt(3) == 0) {
+                int out = (int)myMap.removeElement(j);
+                if (out % 100 != j) {
+                    throw new TwoFourTreeException("main: wrong element removed: " + out + " ; " + j);
+                }
+                counts[j]--;
+            }
+            else {
+                myMap.insertElement(j, i * 100 + j);
+                counts[j]++;
+            }
+        }
+        int total = 0;
+        for (int j = 0; j < counts.length; j++) {
+            if (myMap.count(j) != counts[j] || myMap.findAll(j).length != counts[j]) {
+                throw new TwoFourTreeException("main: key " + j + " has " + myMap.count(j)
+                        + " elements, not " + counts[j]);
+            }
+            total += counts[j];
+        }
+        if (myMap.size() != total) {
+            throw new TwoFourTreeException("main: size is " + myMap.size() + ", not " + total);
+        }
+        myMap.insertElement(-1, null);
+        if (myMap.count(-1) != 1 || myMap.removeElement(-1) != null || myMap.count(-1) != 0) {
+            throw new TwoFourTreeException("main: null element lost");
+        }
+        System.out.println("test 2: skewed keys done, " + total + " elements under "
+                + myMap.keyCount() + " keys");
+    }
+}
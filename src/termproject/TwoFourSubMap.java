@@ -0,0 +1,575 @@
+package termproject;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: A NavigableMap view of the items of a TwoFourTree whose keys
+ * lie between two optional bounds, in ascending or descending order.  The
+ * tree's own NavigableMap methods go through a view with no bounds, and
+ * subMap, headMap, tailMap and descendingMap make narrower ones.  A view
+ * holds no items: changes to the tree show through it, and changes made
+ * through it go to the tree.
+ *
+ * Positions in a view are ranks in the tree.  The bounds are turned into a
+ * range of ranks with TwoFourTree.countBelow, so size, first and last
+ * entries and the floor, ceiling, lower and higher searches all cost
+ * O(log n) from the subtree sizes, and iteration walks the range with a
+ * TreeCursor at O(1) amortized an item.  Removing through an iterator
+ * restarts the cursor at the same rank.  As in TreeMap, iterators are
+ * fail-fast: any other change to the tree's shape makes their next use
+ * throw ConcurrentModificationException.
+ *
+ * Like TreeMap, a view expects one item per key.  Where insertElement has
+ * added duplicates, each duplicate is an entry of its own, and removing or
+ * replacing by key takes whichever item with that key the tree finds.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+final class TwoFourSubMap<K,V>
+        extends AbstractMap<K,V>
+        implements NavigableMap<K,V> {
+
+    private final TwoFourTree<K,V> tree;
+    private final Comparator comp;
+    // bounds in ascending key order, whichever way the view runs
+    private final boolean fromStart;
+    private final Object lowKey;
+    private final boolean lowInclusive;
+    private final boolean toEnd;
+    private final Object highKey;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    TwoFourSubMap(TwoFourTree<K,V> tree, Comparator comp,
+            boolean fromStart, Object lowKey, boolean lowInclusive,
+            boolean toEnd, Object highKey, boolean highInclusive, boolean descending) {
+        this.tree = tree;
+        this.comp = comp;
+        this.fromStart = fromStart;
+        this.lowKey = lowKey;
+        this.lowInclusive = lowInclusive;
+        this.toEnd = toEnd;
+        this.highKey = highKey;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    // ranks of the first item in the view and of the first one past it
+    private int lowRank() {
+        return fromStart ? 0 : tree.countBelow(lowKey, !lowInclusive);
+    }
+
+    private int highRank() {
+        return toEnd ? tree.size() : tree.countBelow(highKey, highInclusive);
+    }
+
+    private boolean tooLow(Object key) {
+        if (fromStart) {
+            return false;
+        }
+        int c = comp.compare(key, lowKey);
+        return (c < 0) || ( (c == 0) && !lowInclusive );
+    }
+
+    private boolean tooHigh(Object key) {
+        if (toEnd) {
+            return false;
+        }
+        int c = comp.compare(key, highKey);
+        return (c > 0) || ( (c == 0) && !highInclusive );
+    }
+
+    private boolean inRange(Object key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    // whether a bound for a narrower view keeps it inside this one
+    private boolean boundInRange(Object key, boolean inclusive) {
+        if (inclusive) {
+            return inRange(key);
+        }
+        return (fromStart || (comp.compare(key, lowKey) >= 0))
+                && (toEnd || (comp.compare(key, highKey) <= 0));
+    }
+
+    public int size() {
+        return Math.max(0, highRank() - lowRank());
+    }
+
+    public boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return inRange(key) && tree.containsKey(key);
+    }
+
+    public V get(Object key) {
+        return inRange(key) ? tree.get(key) : null;
+    }
+
+    public V put(K key, V value) {
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+        return tree.put(key, value);
+    }
+
+    public V remove(Object key) {
+        return inRange(key) ? tree.remove(key) : null;
+    }
+
+    public void clear() {
+        int low = lowRank();
+        for (int count = size(); count > 0; count--) {
+            tree.remove(tree.select(low).key());
+        }
+    }
+
+    // searches in ascending key order; each returns a rank, or -1
+
+    private int absLowest() {
+        int rank = lowRank();
+        return (rank < highRank()) ? rank : -1;
+    }
+
+    private int absHighest() {
+        int rank = highRank() - 1;
+        return (rank >= lowRank()) ? rank : -1;
+    }
+
+    private int absCeiling(Object key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+        int rank = tree.countBelow(key, false);
+        return (rank < highRank()) ? rank : -1;
+    }
+
+    private int absHigher(Object key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+        int rank = tree.countBelow(key, true);
+        return (rank < highRank()) ? rank : -1;
+    }
+
+    private int absFloor(Object key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+        int rank = tree.countBelow(key, true) - 1;
+        return (rank >= lowRank()) ? rank : -1;
+    }
+
+    private int absLower(Object key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+        int rank = tree.countBelow(key, false) - 1;
+        return (rank >= lowRank()) ? rank : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map.Entry<K,V> entryAt(int rank) {
+        if (rank < 0) {
+            return null;
+        }
+        Item item = tree.select(rank);
+        return new AbstractMap.SimpleImmutableEntry<K,V>((K) item.key(), (V) item.element());
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int rank) {
+        return (rank < 0) ? null : (K) tree.select(rank).key();
+    }
+
+    private K keyOrThrow(int rank) {
+        if (rank < 0) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(rank);
+    }
+
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return entryAt(descending ? absHigher(key) : absLower(key));
+    }
+
+    public K lowerKey(K key) {
+        return keyAt(descending ? absHigher(key) : absLower(key));
+    }
+
+    public Map.Entry<K,V> floorEntry(K key) {
+        return entryAt(descending ? absCeiling(key) : absFloor(key));
+    }
+
+    public K floorKey(K key) {
+        return keyAt(descending ? absCeiling(key) : absFloor(key));
+    }
+
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return entryAt(descending ? absFloor(key) : absCeiling(key));
+    }
+
+    public K ceilingKey(K key) {
+        return keyAt(descending ? absFloor(key) : absCeiling(key));
+    }
+
+    public Map.Entry<K,V> higherEntry(K key) {
+        return entryAt(descending ? absLower(key) : absHigher(key));
+    }
+
+    public K higherKey(K key) {
+        return keyAt(descending ? absLower(key) : absHigher(key));
+    }
+
+    public Map.Entry<K,V> firstEntry() {
+        return entryAt(descending ? absHighest() : absLowest());
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        return entryAt(descending ? absLowest() : absHighest());
+    }
+
+    public K firstKey() {
+        return keyOrThrow(descending ? absHighest() : absLowest());
+    }
+
+    public K lastKey() {
+        return keyOrThrow(descending ? absLowest() : absHighest());
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        Map.Entry<K,V> entry = firstEntry();
+        if (entry != null) {
+            tree.remove(entry.getKey());
+        }
+        return entry;
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        Map.Entry<K,V> entry = lastEntry();
+        if (entry != null) {
+            tree.remove(entry.getKey());
+        }
+        return entry;
+    }
+
+    public java.util.Comparator<? super K> comparator() {
+        java.util.Comparator<? super K> order = tree.comparator();
+        return descending ? Collections.reverseOrder(order) : order;
+    }
+
+    public NavigableMap<K,V> descendingMap() {
+        return new TwoFourSubMap<K,V>(tree, comp, fromStart, lowKey, lowInclusive,
+                toEnd, highKey, highInclusive, !descending);
+    }
+
+    /**
+     * Makes a narrower view.  Bounds are in ascending key order; a bound
+     * not given is kept from this view.
+     */
+    private NavigableMap<K,V> subView(boolean hasLow, Object low, boolean lowInc,
+            boolean hasHigh, Object high, boolean highInc) {
+        if (hasLow && !boundInRange(low, lowInc)) {
+            throw new IllegalArgumentException("key out of range: " + low);
+        }
+        if (hasHigh && !boundInRange(high, highInc)) {
+            throw new IllegalArgumentException("key out of range: " + high);
+        }
+        if (hasLow && hasHigh && (comp.compare(low, high) > 0)) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new TwoFourSubMap<K,V>(tree, comp,
+                hasLow ? false : fromStart, hasLow ? low : lowKey, hasLow ? lowInc : lowInclusive,
+                hasHigh ? false : toEnd, hasHigh ? high : highKey, hasHigh ? highInc : highInclusive,
+                descending);
+    }
+
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (descending) {
+            return subView(true, toKey, toInclusive, true, fromKey, fromInclusive);
+        }
+        return subView(true, fromKey, fromInclusive, true, toKey, toInclusive);
+    }
+
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        if (descending) {
+            return subView(true, toKey, inclusive, false, null, false);
+        }
+        return subView(false, null, false, true, toKey, inclusive);
+    }
+
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        if (descending) {
+            return subView(false, null, false, true, fromKey, inclusive);
+        }
+        return subView(true, fromKey, inclusive, false, null, false);
+    }
+
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet();
+    }
+
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new EntrySet();
+    }
+
+    /**
+     * Walks the view's range of ranks with a TreeCursor.
+     */
+    private abstract class RankIterator<T>
+            implements Iterator<T> {
+
+        private int nextRank;
+        private int remaining;
+        private TreeCursor cursor;
+        private int expectedModCount;
+        private K lastKey;
+        private boolean canRemove = false;
+
+        RankIterator() {
+            int low = lowRank();
+            int high = highRank();
+            remaining = Math.max(0, high - low);
+            nextRank = descending ? high - 1 : low;
+            cursor = tree.cursorAt(nextRank, remaining, descending);
+            expectedModCount = tree.getModCount();
+        }
+
+        abstract T make(K key, V value);
+
+        public boolean hasNext() {
+            return (remaining > 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            checkForComodification();
+            K key = (K) cursor.getKey();
+            V value = (V) cursor.getElement();
+            cursor.advance();
+            remaining--;
+            nextRank += descending ? -1 : 1;
+            lastKey = key;
+            canRemove = true;
+            return make(key, value);
+        }
+
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            canRemove = false;
+            tree.remove(lastKey);
+            // going up, everything after the removed item moved down a rank
+            if (!descending) {
+                nextRank--;
+            }
+            cursor = tree.cursorAt(nextRank, remaining, descending);
+            expectedModCount = tree.getModCount();
+        }
+
+        private void checkForComodification() {
+            if (tree.getModCount() != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * An entry handed out by iteration, whose setValue writes to the tree.
+     */
+    private final class ViewEntry
+            extends AbstractMap.SimpleEntry<K,V> {
+
+        private static final long serialVersionUID = 1L;
+
+        ViewEntry(K key, V value) {
+            super(key, value);
+        }
+
+        public V setValue(V value) {
+            tree.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private final class EntrySet
+            extends AbstractSet<Map.Entry<K,V>> {
+
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new RankIterator<Map.Entry<K,V>>() {
+                Map.Entry<K,V> make(K key, V value) {
+                    return new ViewEntry(key, value);
+                }
+            };
+        }
+
+        public int size() {
+            return TwoFourSubMap.this.size();
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            return containsKey(key) && Objects.equals(get(key), entry.getValue());
+        }
+
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            TwoFourSubMap.this.remove(((Map.Entry<?,?>) o).getKey());
+            return true;
+        }
+
+        public void clear() {
+            TwoFourSubMap.this.clear();
+        }
+    }
+
+    private final class KeySet
+            extends AbstractSet<K>
+            implements NavigableSet<K> {
+
+        public Iterator<K> iterator() {
+            return new RankIterator<K>() {
+                K make(K key, V value) {
+                    return key;
+                }
+            };
+        }
+
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        public int size() {
+            return TwoFourSubMap.this.size();
+        }
+
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public boolean remove(Object o) {
+            if (!containsKey(o)) {
+                return false;
+            }
+            TwoFourSubMap.this.remove(o);
+            return true;
+        }
+
+        public void clear() {
+            TwoFourSubMap.this.clear();
+        }
+
+        public java.util.Comparator<? super K> comparator() {
+            return TwoFourSubMap.this.comparator();
+        }
+
+        public K first() {
+            return firstKey();
+        }
+
+        public K last() {
+            return lastKey();
+        }
+
+        public K lower(K key) {
+            return lowerKey(key);
+        }
+
+        public K floor(K key) {
+            return floorKey(key);
+        }
+
+        public K ceiling(K key) {
+            return ceilingKey(key);
+        }
+
+        public K higher(K key) {
+            return higherKey(key);
+        }
+
+        public K pollFirst() {
+            Map.Entry<K,V> entry = pollFirstEntry();
+            return (entry == null) ? null : entry.getKey();
+        }
+
+        public K pollLast() {
+            Map.Entry<K,V> entry = pollLastEntry();
+            return (entry == null) ? null : entry.getKey();
+        }
+
+        public NavigableSet<K> descendingSet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        public NavigableSet<K> subSet(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            return subMap(fromKey, fromInclusive, toKey, toInclusive).navigableKeySet();
+        }
+
+        public NavigableSet<K> headSet(K toKey, boolean inclusive) {
+            return headMap(toKey, inclusive).navigableKeySet();
+        }
+
+        public NavigableSet<K> tailSet(K fromKey, boolean inclusive) {
+            return tailMap(fromKey, inclusive).navigableKeySet();
+        }
+
+        public SortedSet<K> subSet(K fromKey, K toKey) {
+            return subSet(fromKey, true, toKey, false);
+        }
+
+        public SortedSet<K> headSet(K toKey) {
+            return headSet(toKey, false);
+        }
+
+        public SortedSet<K> tailSet(K fromKey) {
+            return tailSet(fromKey, true);
+        }
+    }
+}
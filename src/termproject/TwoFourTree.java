@@ -1,27 +1,161 @@
 package termproject;
 
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * Title:        Term Project 2-4 Trees
- * Description: An abstract data type for a 2-4 tree
+ * Description: An abstract data type for a 2-4 tree.  The tree is also a
+ * NavigableMap, so it can stand in for a TreeMap; the map methods work from
+ * the same subtree sizes as rank and select (see TwoFourSubMap).
  * Copyright:    Copyright (c) 2017
  * @author Joel Beckmeyer & Daniel Parker
  * @version 1.0
  */
-public class TwoFourTree
-        implements Dictionary {
-
-    private static final int MAX_ITEMS = 3;
+public class TwoFourTree<K,V>
+        extends AbstractMap<K,V>
+        implements NavigableMap<K,V>, Dictionary<K,V>, Iterable<Item> {
+
+    private static final int DEFAULT_ORDER = 4;
+    // widest nodes for which a scan beats a binary search; Integer keys
+    // compare cheaply enough that the scan wins on much wider nodes (see
+    // NodeSearchBenchmark)
+    private static final int LINEAR_SEARCH_MAX_ITEMS = 8;
+    private static final int LINEAR_SEARCH_MAX_INTEGER_ITEMS = 64;
+    // returned by lookup for a missing key, since null may be an element
+    private static final Object NOT_FOUND = new Object();
 
     private Comparator treeComp;
-    private int size = 0;
+    private NodeSearch nodeSearch;
+    private TFNodePool nodePool;
+    private int maxItems;
+    private int minItems;
+    private boolean topDown;
     private TFNode treeRoot = null;
+    // bumped by every change to the tree's shape, so cursors can tell they
+    // are stale
+    private int modCount = 0;
+    // null unless instrumented; every hook checks it first
+    private TreeMetrics metrics = null;
+    // made on first use
+    private java.util.Comparator<? super K> keyOrder = null;
+    private TwoFourSubMap<K,V> fullView = null;
 
     public TwoFourTree(Comparator comp) {
+        this (comp, DEFAULT_ORDER);
+    }
+
+    /**
+     * Creates a 2-4 tree ordering Comparable keys by their natural order.
+     */
+    public TwoFourTree() {
+        this (ComparatorAdapter.naturalOrder());
+    }
+
+    /**
+     * Creates a 2-4 tree ordered by a java.util.Comparator.
+     * @param order order for keys
+     */
+    public TwoFourTree(java.util.Comparator<? super K> order) {
+        this (new ComparatorAdapter(order));
+    }
+
+    /**
+     * Creates a B-tree of the given order, i.e. maximum number of children
+     * per node.  Order 4 gives the usual 2-4 tree.
+     * @param comp comparator for keys
+     * @param order maximum number of children of a node; at least 3
+     */
+    public TwoFourTree(Comparator comp, int order) {
+        if (order < 3) {
+            throw new TwoFourTreeException("order must be at least 3: " + order);
+        }
         treeComp = comp;
+        maxItems = order - 1;
+        // smallest item count that splits and fusions both preserve
+        minItems = (order + 1) / 2 - 1;
+        nodeSearch = chooseNodeSearch(comp, maxItems);
+        nodePool = new TFNodePool(maxItems);
+    }
+
+    /**
+     * Creates a B-tree of the given order that can insert and remove in a
+     * single top-down pass.  Splitting a full node on the way down must leave
+     * two legal nodes, so top-down trees need an even order.
+     * @param comp comparator for keys
+     * @param order maximum number of children of a node; at least 3
+     * @param topDown true to split and refill nodes on the way down
+     */
+    public TwoFourTree(Comparator comp, int order, boolean topDown) {
+        this (comp, order);
+        if (topDown && (order % 2 != 0)) {
+            throw new TwoFourTreeException("top-down mode needs an even order: " + order);
+        }
+        this.topDown = topDown;
+    }
+
+    /**
+     * Picks the in-node search that suits a tree's node width and key
+     * type: a scan for narrow nodes and a binary search for wide ones, where
+     * the cut-over is much wider for Integer keys.
+     * @param comp comparator for keys
+     * @param maxItems maximum number of items in a node
+     * @return search strategy for this tree
+     */
+    static NodeSearch chooseNodeSearch(Comparator comp, int maxItems) {
+        int linearMaxItems = LINEAR_SEARCH_MAX_ITEMS;
+        if (comp.getClass() == IntegerComparator.class) {
+            linearMaxItems = LINEAR_SEARCH_MAX_INTEGER_ITEMS;
+        }
+        if (maxItems > linearMaxItems) {
+            return new BinaryNodeSearch();
+        }
+        return new LinearNodeSearch();
+    }
+
+    /**
+     * Replaces the in-node search picked at construction.
+     * @param search strategy to use for all later operations
+     */
+    public void setNodeSearch(NodeSearch search) {
+        nodeSearch = search;
+    }
+
+    /**
+     * Starts or stops recording what the tree does.
+     * @param metrics metrics to record into, or null to record nothing
+     */
+    public void setMetrics(TreeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return metrics the tree records into, or null if none
+     */
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return count of changes to the tree's shape so far
+     */
+    int getModCount() {
+        return modCount;
     }
 
     private TFNode root() {
@@ -40,11 +174,25 @@ public class TwoFourTree
 	 * @throws TwoFourTreeException if root is null
 	 */
 	private TFNode search(Object key) throws TwoFourTreeException {
-		TFNode current = treeRoot;
-		TFNode parent = null;
 		if(treeRoot == null) {
 			throw new TwoFourTreeException("root was null");
 		}
+		return searchFrom(treeRoot, key);
+	}
+
+	/**
+	 * Searches the subtree under start for a node containing the given key.
+	 * 
+	 * @param start root of the subtree to search
+	 * @param key Object to search for
+	 * @return node which contains key, or insertion point for this key
+	 */
+	private TFNode searchFrom(TFNode start, Object key) {
+		if(metrics != null) {
+			metrics.searched();
+		}
+		TFNode current = start;
+		TFNode parent = null;
 
 		// loop until we have reached the child of an external node, or until
 		// we find the key
@@ -53,7 +201,7 @@ public class TwoFourTree
 
 			// ensure that the index given is not out of bounds
 			if(index != current.getNumItems()) {
-				if(treeComp.isEqual(current.getItem(index).key(), key)) {
+				if(treeComp.compare(current.getKey(index), key) == 0) {
 					break;
 				}
 			}
@@ -80,33 +228,18 @@ public class TwoFourTree
 	 * @return index of first item greater than or equal to given key
 	 */
 	private int FFGTE(TFNode node, Object key) {
-		int i;
-		// loop through item array, comparing each item until we find first item
-		// greater than or equal to key
-		for(i = 0; i < node.getNumItems(); i++) {
-			if(treeComp.isGreaterThanOrEqualTo(node.getItem(i).key(), key)) {
-				break;
-			}
-		}
-		return i;
+		return nodeSearch.FFGTE(node, key, treeComp);
 	}
 
 	/**
-	 * Finds the index of the given node in its parent.
+	 * Finds the index of the given node in its parent.  The node keeps its
+	 * slot up to date as the parent changes, so no scan is needed.
 	 * 
 	 * @param node the node to be found in the parent
 	 * @return index of node in its parent
 	 */
 	private int WCIT(TFNode node) {
-		TFNode parent = node.getParent();
-		int i;
-		// loop through child array until we find the given node
-		for(i = 0; i < parent.getNumItems() + 1; ++i) {
-			if(parent.getChild(i) == node) {
-				break;
-			}
-		}
-		return i;
+		return node.getParentIndex();
 	}
 
 	/**
@@ -131,85 +264,260 @@ public class TwoFourTree
 	}
 
 	/**
-	 * Checks for and fixes node overflow.
+	 * Checks for and fixes node overflow.  An overflowed node is split around
+	 * its middle item, which moves up into the parent; this repeats up the
+	 * tree for as long as the parent overflows in turn.
 	 * 
 	 * @param node the node to check for overflow
 	 */
 	private void fixOverflow(TFNode node) {
-		if(node.getNumItems() <= MAX_ITEMS) {
-			return;
+		while(node.getNumItems() > maxItems) {
+			node = split(node);
 		}
+	}
 
+	/**
+	 * Splits a node around its middle item, which moves up into the parent.
+	 * Used on overflowed nodes, and by top-down insertion on full ones.
+	 * 
+	 * @param node the node to split
+	 * @return the parent, which may now overflow
+	 */
+	private TFNode split(TFNode node) {
 		TFNode parent = node.getParent();
 
+		if(metrics != null) {
+			metrics.split();
+		}
+
 		// special case when root overflows (we must increase height of tree)
 		if(parent == null) {
-			parent = new TFNode();
+			if(metrics != null) {
+				metrics.rootGrew();
+			}
+			parent = nodePool.acquire();
 			parent.setChild(0, node);
+			parent.setSubtreeSize(node.getSubtreeSize());
 			node.setParent(parent);
 			treeRoot = parent;
 		}
 
-		// removes offending data from current node
 		int index = WCIT(node);
+		int last = node.getNumItems() - 1;
+		int middle = node.getNumItems() / 2;
 
-		// preserves data that we want to move around
-		TFNode left = node.getChild(3);
-		node.setChild(3, null);
-		TFNode right = node.getChild(4);
-		node.setChild(4, null);
-		Item toSibling = node.deleteItem(3);
-		Item toParent = node.deleteItem(2);
-		
-		// creates and hooks up new sibling
-		TFNode sibling = new TFNode();
+		// creates new sibling and moves the items right of the middle item
+		// into it, along with their children
+		TFNode sibling = nodePool.acquire();
 		sibling.setParent(parent);
-		sibling.addItem(0, toSibling);
-		sibling.setChild(0, left);
-		sibling.setChild(1, right);
-		if(left != null) {
-			left.setParent(sibling);
-			right.setParent(sibling);
-		}
-		
+		for(int i = middle + 1; i <= last; i++) {
+			sibling.addEntry(i - middle - 1, node.getKey(i), node.getElement(i));
+		}
+		int siblingSize = last - middle;
+		for(int i = middle + 1; i <= last + 1; i++) {
+			TFNode child = node.getChild(i);
+			node.setChild(i, null);
+			sibling.setChild(i - middle - 1, child);
+			if(child != null) {
+				child.setParent(sibling);
+				siblingSize += child.getSubtreeSize();
+			}
+		}
+		// the middle item leaves node's subtree but stays in parent's
+		sibling.setSubtreeSize(siblingSize);
+		node.setSubtreeSize(node.getSubtreeSize() - siblingSize - 1);
+
+		// removes moved data from current node, working back from the end
+		for(int i = last; i > middle; i--) {
+			node.deleteEntry(i);
+		}
+		Object parentKey = node.getKey(middle);
+		Object parentElement = node.deleteEntry(middle);
+
 		// connects children to parents
-		parent.insertItem(index, toParent);
+		parent.insertEntry(index, parentKey, parentElement);
 		parent.setChild(index, node);
 		parent.setChild(index + 1, sibling);
-		//}
-		
-		// recursively call on parent
-		fixOverflow(parent);
+
+		return parent;
 	}
 
 	/**
-	 * Checks for and fixes node underflow.
+	 * Checks for and fixes node underflow.  A transfer ends the fix, while a
+	 * fusion takes an item from the parent, so the loop moves up to check it.
 	 * 
 	 * @param node the node to check for underflow
 	 */
 	private void fixUnderflow(TFNode node) {
-		// checks for underflow
-		if(node.getNumItems() < 1) {
+		while(node != treeRoot && node.getNumItems() < minItems) {
+			node = refill(node);
+			if(node == null) {
+				return;
+			}
+		}
+
+		// special case where root is underflowed
+		if(node == treeRoot && node.getNumItems() < 1) {
+			collapseRoot();
+		}
+	}
+
+	/**
+	 * Gives a non-root node one more item, from a sibling by transfer if a
+	 * sibling can spare one, or else by fusing it with a sibling.
+	 * 
+	 * @param node node to refill
+	 * @return the parent if a fusion took one of its items, else null
+	 */
+	private TFNode refill(TFNode node) {
+		// different cases to check and run
+		if(isPossibleLTrans(node)) {
+			leftTransfer(node);
+			return null;
+		}
+		else if(isPossibleRTrans(node)) {
+			rightTransfer(node);
+			return null;
+		}
+		else if(isPossibleLFusion(node)) {
+			return leftFusion(node);
+		}
+		else {
+			return rightFusion(node);
+		}
+	}
+
+	/**
+	 * Replaces a root left with no items by its only child, lowering the
+	 * height of the tree; the tree becomes empty if the root was a leaf.
+	 */
+	private void collapseRoot() {
+		TFNode oldRoot = treeRoot;
+		treeRoot = oldRoot.getChild(0);
+		if(treeRoot != null) {
+			treeRoot.setParent(null);
+			if(metrics != null) {
+				metrics.rootShrank();
+			}
+		}
+		nodePool.release(oldRoot);
+	}
+
+	/**
+	 * Inserts in a single pass down the tree.  Every full node met on the way
+	 * is split before it is entered, so the leaf has room for the new item
+	 * and no split ever has to travel back up.
+	 * 
+	 * @param key key of item to insert
+	 * @param element element of item to insert
+	 */
+	private void insertTopDown(Object key, Object element) {
+		modCount++;
+		if(treeRoot == null) {
+			treeRoot = nodePool.acquire();
+		}
+		if(metrics != null) {
+			metrics.searched();
+		}
+
+		TFNode node = treeRoot;
+		if(node.getNumItems() == maxItems) {
+			node = split(node);
+		}
+
+		// the new item will be below every node entered, so count it in
+		// each on the way down
+		node.setSubtreeSize(node.getSubtreeSize() + 1);
+		while(node.getChild(0) != null) {
+			TFNode child = node.getChild(FFGTE(node, key));
+			if(child.getNumItems() == maxItems) {
+				// the middle item moves up into node, so search node again
+				split(child);
+				child = node.getChild(FFGTE(node, key));
+			}
+			node = child;
+			node.setSubtreeSize(node.getSubtreeSize() + 1);
+		}
+
+		node.insertEntry(FFGTE(node, key), key, element);
+	}
+
+	/**
+	 * Removes in a single pass down the tree.  Every child is refilled to
+	 * more than the minimum before it is entered, so removing from the leaf
+	 * can never underflow and nothing has to travel back up.  A key found in
+	 * an internal node is replaced by its in-order successor, found by the
+	 * same kind of descent.
+	 * 
+	 * @param key key of item to remove
+	 * @return element of removed item
+	 * @throws ElementNotFoundException if the key is not in the tree
+	 */
+	private Object removeTopDown(Object key) throws ElementNotFoundException {
+		if(treeRoot == null) {
+			throw new TwoFourTreeException("root was null");
+		}
+		// nodes are refilled on the way down even if the key is missing
+		modCount++;
+		if(metrics != null) {
+			metrics.searched();
+		}
+
+		TFNode node = treeRoot;
+		while(true) {
+			int index = FFGTE(node, key);
+			boolean found = index != node.getNumItems()
+					&& treeComp.compare(node.getKey(index), key) == 0;
 
-			// special case where root is underflowed
-			if(node == treeRoot) {
-				treeRoot  = node.getChild(0);
-				node.setParent(null);
+			if(node.getChild(0) == null) {
+				if(!found) {
+					throw new ElementNotFoundException("key is not in tree: " + key);
+				}
+				Object returnData = node.removeEntry(index);
+				addToSubtreeSizes(node, -1);
+				if(node.getNumItems() < 1) {
+					collapseRoot();
+				}
+				return returnData;
 			}
 
-			// different cases to check and run
-			else if(isPossibleLTrans(node)) {
-				leftTransfer(node);
+			// the key's item sits between children index and index + 1, and
+			// its successor is in the latter
+			TFNode child = node.getChild(found ? index + 1 : index);
+			if(child.getNumItems() <= minItems) {
+				// refilling can move items of node, so search it again; a
+				// fusion may also leave an empty root to collapse
+				refill(child);
+				if(node.getNumItems() < 1) {
+					collapseRoot();
+					node = treeRoot;
+				}
+				continue;
 			}
-			else if(isPossibleRTrans(node)) {
-				rightTransfer(node);
+			if(!found) {
+				node = child;
+				continue;
 			}
-			else if(isPossibleLFusion(node)) {
-				leftFusion(node);
+
+			// go left down to a leaf, refilling each child first; refilling a
+			// leftmost child only ever borrows from or fuses with its right
+			// sibling, so the item at node is not moved
+			TFNode successor = child;
+			while(successor.getChild(0) != null) {
+				TFNode next = successor.getChild(0);
+				if(next.getNumItems() <= minItems) {
+					refill(next);
+				}else {
+					successor = next;
+				}
 			}
-			else {
-				rightFusion(node);
+			if(metrics != null) {
+				metrics.swappedSuccessor();
 			}
+			Object successorKey = successor.getKey(0);
+			Object successorElement = successor.removeEntry(0);
+			addToSubtreeSizes(successor, -1);
+			return node.replaceEntry(index, successorKey, successorElement);
 		}
 	}
 
@@ -227,8 +535,8 @@ public class TwoFourTree
 		if(index > 0) {
 			TFNode sibling = parent.getChild(index - 1);
 
-			// checks if existing left sibling has 2+ items
-			return sibling.getNumItems() >= 2;
+			// checks if existing left sibling can spare an item
+			return sibling.getNumItems() > minItems;
 		}else {
 			return false;
 		}
@@ -248,8 +556,8 @@ public class TwoFourTree
 		if(index < parent.getNumItems()) {
 			TFNode sibling = parent.getChild(index + 1);
 
-			// checks if existing right sibling has 2+ items
-			return sibling.getNumItems() >= 2;
+			// checks if existing right sibling can spare an item
+			return sibling.getNumItems() > minItems;
 		}else {
 			return false;
 		}
@@ -261,6 +569,9 @@ public class TwoFourTree
 	 * @param node underflowed node to perform on
 	 */
 	private void leftTransfer(TFNode node) {
+		if(metrics != null) {
+			metrics.transferred();
+		}
 		int index = WCIT(node);
 		TFNode parent = node.getParent();
 		TFNode sibling = parent.getChild(index - 1);
@@ -268,22 +579,21 @@ public class TwoFourTree
 		// preserving data that would otherwise be lost
 		TFNode lastChild = sibling.getChild(sibling.getNumItems());
 		sibling.setChild(sibling.getNumItems(), null);
-		Item lastItem = sibling.deleteItem(sibling.getNumItems() - 1);
-
-		// swap old sibling item with parent and add parent item to underflowed
-		// node
-		Item parentItem = parent.replaceItem(index - 1, lastItem);
-		node.addItem(0, parentItem);
+		Object lastKey = sibling.getKey(sibling.getNumItems() - 1);
+		Object lastElement = sibling.deleteEntry(sibling.getNumItems() - 1);
 
+		// swap old sibling item with parent and add parent item to the front
+		// of underflowed node; this shifts the old children right by one
+		Object parentKey = parent.getKey(index - 1);
+		Object parentElement = parent.replaceEntry(index - 1, lastKey, lastElement);
+		node.insertEntry(0, parentKey, parentElement);
 
-		// move old child 0 to child position 1, then add child from sibling as
-		// child 0
-		TFNode oldChild = node.getChild(0);
-		node.setChild(1, oldChild);
+		// add child from sibling as child 0
 		node.setChild(0, lastChild);
 		if(lastChild != null) {
 			lastChild.setParent(node);
 		}
+		moveSubtreeSize(sibling, node, lastChild);
 	}
 	
 	/**
@@ -292,25 +602,48 @@ public class TwoFourTree
 	 * @param node underflowed node to perform on
 	 */
 	private void rightTransfer(TFNode node) {
+		if(metrics != null) {
+			metrics.transferred();
+		}
 		int index = WCIT(node);
 		TFNode parent = node.getParent();
 		TFNode sibling = parent.getChild(index + 1);
 
 		// preserving data that would otherwise be lost
 		TFNode firstChild = sibling.getChild(0);
-		Item firstItem = sibling.removeItem(0);
-
-		// swap old sibling item with parent and add parent item to underflowed
-		// node
-		Item parentItem = parent.replaceItem(index, firstItem);
-		node.addItem(0, parentItem);
+		Object firstKey = sibling.getKey(0);
+		Object firstElement = sibling.removeEntry(0);
 
+		// swap old sibling item with parent and add parent item to the end of
+		// underflowed node
+		Object parentKey = parent.getKey(index);
+		Object parentElement = parent.replaceEntry(index, firstKey, firstElement);
+		node.insertEntry(node.getNumItems(), parentKey, parentElement);
 
-		// insert child from sibling as 2nd(index 1) child
-		node.setChild(1, firstChild);
+		// insert child from sibling as last child
+		node.setChild(node.getNumItems(), firstChild);
 		if(firstChild != null) {
 			firstChild.setParent(node);
 		}
+		moveSubtreeSize(sibling, node, firstChild);
+	}
+
+	/**
+	 * Updates subtree sizes after a transfer, in which one item went from
+	 * sibling to the parent, one from the parent to node, and child from
+	 * sibling to node.
+	 * 
+	 * @param sibling node that gave up an item
+	 * @param node node that received an item
+	 * @param child child that moved along, or null
+	 */
+	private void moveSubtreeSize(TFNode sibling, TFNode node, TFNode child) {
+		int moved = 1;
+		if(child != null) {
+			moved += child.getSubtreeSize();
+		}
+		sibling.setSubtreeSize(sibling.getSubtreeSize() - moved);
+		node.setSubtreeSize(node.getSubtreeSize() + moved);
 	}
 
 	/**
@@ -325,11 +658,15 @@ public class TwoFourTree
 	}
 
 	/**
-	 * Performs a left fusion operation
+	 * Performs a left fusion operation, freeing the underflowed node
 	 * 
 	 * @param node underflowed node to perform fusion on
+	 * @return the parent, which may now underflow
 	 */
-	private void leftFusion(TFNode node) {
+	private TFNode leftFusion(TFNode node) {
+		if(metrics != null) {
+			metrics.fused();
+		}
 		int index = WCIT(node);
 		TFNode parent = node.getParent();
 
@@ -338,108 +675,207 @@ public class TwoFourTree
 
 		// preserving data
 		TFNode sibling = parent.getChild(index - 1);
-		Item parentItem = parent.removeItem(index - 1);
-		TFNode child = node.getChild(0);
-
-		// insert data in sibling
-		sibling.insertItem(sibling.getNumItems(), parentItem);
-		sibling.setChild(sibling.getNumItems(), child);
-		if(child != null) {
-			child.setParent(sibling);
+		Object parentKey = parent.getKey(index - 1);
+		Object parentElement = parent.removeEntry(index - 1);
+
+		// append parent item, then the underflowed node's items and children,
+		// to sibling
+		appendEntry(sibling, parentKey, parentElement, node.getChild(0));
+		for(int i = 0; i < node.getNumItems(); i++) {
+			appendEntry(sibling, node.getKey(i), node.getElement(i),
+					node.getChild(i + 1));
 		}
 
 		// fix parent pointer
 		parent.setChild(index - 1, sibling);
-		if(node == null) {
-			System.out.println("node was null: ");
-		}
+		sibling.setSubtreeSize(sibling.getSubtreeSize() + node.getSubtreeSize() + 1);
 
-		// recursively check underflow on parent
-		fixUnderflow(parent);
+		nodePool.release(node);
+		return parent;
 	}
 
 	/**
-	 * Performs a right fusion operation
+	 * Performs a right fusion operation, freeing the underflowed node
 	 * 
 	 * @param node underflowed node to perform fusion on
+	 * @return the parent, which may now underflow
 	 */
-	private void rightFusion(TFNode node) {
+	private TFNode rightFusion(TFNode node) {
+		if(metrics != null) {
+			metrics.fused();
+		}
 		int index = WCIT(node);
 		TFNode parent = node.getParent();
 
 		// preserving data
-		Item parentItem = parent.removeItem(index);
-		TFNode child = node.getChild(0);
+		Object parentKey = parent.getKey(index);
+		Object parentElement = parent.removeEntry(index);
 		TFNode sibling = parent.getChild(index);
 
-		// insert data in sibling
-		sibling.insertItem(0, parentItem);
-		sibling.setChild(0, child);
+		// prepend the underflowed node's items and children, then the parent
+		// item, to sibling; working backwards keeps them in order
+		prependEntry(sibling, parentKey, parentElement,
+				node.getChild(node.getNumItems()));
+		for(int i = node.getNumItems() - 1; i >= 0; i--) {
+			prependEntry(sibling, node.getKey(i), node.getElement(i),
+					node.getChild(i));
+		}
+		sibling.setSubtreeSize(sibling.getSubtreeSize() + node.getSubtreeSize() + 1);
+
+		nodePool.release(node);
+		return parent;
+	}
+
+	/**
+	 * Adds an item to the end of a node, with the given child to its right.
+	 * 
+	 * @param node node to add to
+	 * @param key key of item to add
+	 * @param element element of item to add
+	 * @param child new last child of node
+	 */
+	private void appendEntry(TFNode node, Object key, Object element,
+			TFNode child) {
+		node.insertEntry(node.getNumItems(), key, element);
+		node.setChild(node.getNumItems(), child);
 		if(child != null) {
-			child.setParent(sibling);
+			child.setParent(node);
 		}
+	}
 
-		// recursively check underflow on parent
-		fixUnderflow(parent);
+	/**
+	 * Adds an item to the front of a node, with the given child to its left.
+	 * 
+	 * @param node node to add to
+	 * @param key key of item to add
+	 * @param element element of item to add
+	 * @param child new first child of node
+	 */
+	private void prependEntry(TFNode node, Object key, Object element,
+			TFNode child) {
+		node.insertEntry(0, key, element);
+		node.setChild(0, child);
+		if(child != null) {
+			child.setParent(node);
+		}
 	}
     public int size() {
-        return size;
+        if(treeRoot == null) {
+            return 0;
+        }
+        return treeRoot.getSubtreeSize();
     }
 
     public boolean isEmpty() {
-        return (size == 0);
+        return (size() == 0);
     }
 
     /**
      * Searches dictionary to determine if key is present
      * @param key to be searched for
-     * @return object corresponding to key; null if not found
+     * @return object corresponding to key; null if not found, or if the
+     * tree is empty
      */
-    public Object findElement(Object key) {
-		// first get the node which might contain the given key
-		TFNode target = search(key);
-
-		// find the key in this node
-		for(int i = 0; i < target.getNumItems(); ++i) {
-			if(treeComp.isEqual(target.getItem(i).key(), key)) {
-				return target.getItem(i).element();
-			}
+    @SuppressWarnings("unchecked")
+    public V findElement(Object key) {
+		return (V) find(key, null);
+    }
+
+    /**
+     * @param key to be searched for
+     * @param defaultElement what to return if the key is not in the tree
+     * @return object corresponding to key, or defaultElement if not found
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultElement) {
+		Object element = find(key, NOT_FOUND);
+		if(element == NOT_FOUND) {
+			return defaultElement;
 		}
-		
-		// if key was not in node, return null
-		return null;
+		return (V) element;
     }
 
     /**
-     * Inserts provided element into the Dictionary
-     * @param key of object to be inserted
-     * @param element to be inserted
+     * @param key to be searched for
+     * @return true if an item with the key is in the tree
      */
-    public void insertElement(Object key, Object element) {
-		if(treeRoot == null) {
-			treeRoot = new TFNode();
+    public boolean containsKey(Object key) {
+		return find(key, NOT_FOUND) != NOT_FOUND;
+    }
+
+	// lookup, timed if the tree is instrumented
+	private Object find(Object key, Object missing) {
+		if(metrics == null) {
+			return lookup(key, missing);
+		}
+		long start = System.nanoTime();
+		try {
+			return lookup(key, missing);
+		}
+		finally {
+			metrics.found(System.nanoTime() - start);
 		}
+	}
 
-		Item data = new Item(key, element);
-		TFNode node = search(key);
-		int index = FFGTE(node, key);
-		if(index != node.getNumItems()) {
-			// external node that contains a duplicate
-			if(node.getChild(0) == null) {
-				node.insertItem(index, data);
-			// internal node that contains a duplicate
-			}else {
-				node = getInOrderSuccessor(node, index);
-				node.insertItem(0, data);
+	/**
+	 * Walks down from the root and returns the element as soon as a node
+	 * holds the key, so each node on the path is searched once and a miss
+	 * ends at the leaf with nothing left to scan.  An empty tree is just a
+	 * miss.
+	 * 
+	 * @param key key to find
+	 * @param missing what to return if the key is not in the tree
+	 * @return element of the first item found with the key, or missing
+	 */
+	private Object lookup(Object key, Object missing) {
+		if(metrics != null) {
+			metrics.searched();
+		}
+		TFNode current = treeRoot;
+		while(current != null) {
+			int index = FFGTE(current, key);
+			if(index != current.getNumItems()
+					&& treeComp.compare(current.getKey(index), key) == 0) {
+				return current.getElement(index);
 			}
-		// if we are at last index
-		}else {
-			node.insertItem(index, data);
+			current = current.getChild(index);
 		}
+		return missing;
+	}
 
-		fixOverflow(node);
+    /**
+     * Inserts provided element into the Dictionary
+     * @param key of object to be inserted
+     * @param element to be inserted
+     * @exception NullPointerException if key is null and the tree uses
+     * natural order
+     */
+    public void insertElement(K key, V element) {
+		checkKey(key);
+		if(metrics == null) {
+			untimedInsert(key, element);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			untimedInsert(key, element);
+		}
+		finally {
+			metrics.inserted(System.nanoTime() - start);
+		}
     }
 
+	private void untimedInsert(Object key, Object element) {
+		if(topDown) {
+			insertTopDown(key, element);
+			return;
+		}
+		if(treeRoot == null) {
+			treeRoot = nodePool.acquire();
+		}
+		insertAt(search(key), key, element);
+	}
+
     /**
      * Searches dictionary to determine if key is present, then
      * removes and returns corresponding object
@@ -447,56 +883,761 @@ public class TwoFourTree
      * @return object corresponding to key
      * @exception ElementNotFoundException if the key is not in dictionary
      */
-    public Object removeElement(Object key) throws ElementNotFoundException {
+    @SuppressWarnings("unchecked")
+    public V removeElement(Object key) throws ElementNotFoundException {
+		if(metrics == null) {
+			return (V) untimedRemove(key);
+		}
+		long start = System.nanoTime();
+		try {
+			return (V) untimedRemove(key);
+		}
+		finally {
+			metrics.removed(System.nanoTime() - start);
+		}
+    }
+
+	// removeElement without timing
+	private Object untimedRemove(Object key) {
+		if(topDown) {
+			return removeTopDown(key);
+		}
 		TFNode node = search(key);
 		int index = FFGTE(node, key);
 
-		// if we are at an external node and we got the last index of node, 
-		// we know that the key was not in tree
-		if(index == node.getNumItems() && node.getChild(0) == null) {
-			this.printAllElements();
+		// search stops at the key if it is anywhere in the tree, so if it
+		// is not in this node, the tree does not have it
+		if(index == node.getNumItems() || treeComp.compare(node.getKey(index), key) != 0) {
 			throw new ElementNotFoundException("key is not in tree: " + key);
 		}
+		return removeAt(node, index);
+	}
 
-		Object returnData;
-		// if we are at an external node, simply remove data from node
-		if(node.getChild(0) == null) {
-			returnData = node.removeItem(index).element();
-		// else, we are at an internal node, we must replace data with in-order
-		// successor
-		}else {
-			TFNode successor = getInOrderSuccessor(node, index);
-			returnData = node.replaceItem(index, successor.removeItem(0)).element();
-			node = successor;
-		}
+    /**
+     * @return a cursor over all items in key order
+     */
+    public TreeCursor iterator() {
+        return range(null, null);
+    }
 
-		fixUnderflow(node);
-		return returnData;
+    /**
+     * Streams the items whose keys are at least lowKey and less than
+     * highKey, in key order.  The search for the first item costs
+     * O(log n); each further item costs O(1) amortized.
+     * @param lowKey smallest key to include; null for no limit
+     * @param highKey first key to exclude; null for no limit
+     * @return cursor over the items in the range
+     */
+    public TreeCursor range(Object lowKey, Object highKey) {
+        return new TreeCursor(this, treeRoot, nodeSearch, treeComp, lowKey, highKey);
     }
 
-    public static void main(String[] args) {
-        Comparator myComp = new IntegerComparator();
-        TwoFourTree myTree = new TwoFourTree(myComp);
+    /**
+     * @param highKey first key to exclude
+     * @return cursor over the items with keys less than highKey
+     */
+    public TreeCursor headRange(Object highKey) {
+        return range(null, highKey);
+    }
 
-        myTree.insertElement(47, 47);
-        myTree.insertElement(83, 83);
-        myTree.insertElement(22, 22);
-        myTree.insertElement(16, 16);
-        myTree.insertElement(49, 49);
-        myTree.insertElement(100, 100);
-        myTree.insertElement(38, 38);
-        myTree.insertElement(3, 3);
-        myTree.insertElement(53, 53);
-        myTree.insertElement(66, 66);
-        myTree.insertElement(19, 19);
-        myTree.insertElement(23, 23);
-        myTree.insertElement(24, 24);
-        myTree.insertElement(88, 88);
-        myTree.insertElement(1, 1);
-        myTree.insertElement(97, 97);
-        myTree.insertElement(94, 94);
-        myTree.insertElement(35, 35);
-        myTree.insertElement(51, 51);
+    /**
+     * @param lowKey smallest key to include
+     * @return cursor over the items with keys of at least lowKey
+     */
+    public TreeCursor tailRange(Object lowKey) {
+        return range(lowKey, null);
+    }
+
+    /**
+     * Replaces the element of an item with the given key, leaving the tree's
+     * shape alone.
+     * @param key key of the item to change
+     * @param element new element
+     * @return the old element
+     * @exception ElementNotFoundException if the key is not in the tree
+     */
+    Object replaceElement(Object key, Object element) throws ElementNotFoundException {
+		if(treeRoot == null) {
+			throw new ElementNotFoundException("key is not in tree: " + key);
+		}
+		TFNode node = search(key);
+		int index = FFGTE(node, key);
+		if(index == node.getNumItems() || treeComp.compare(node.getKey(index), key) != 0) {
+			throw new ElementNotFoundException("key is not in tree: " + key);
+		}
+		Object returnElement = node.getElement(index);
+		node.setElement(index, element);
+		return returnElement;
+    }
+
+    /**
+     * Counts the items with keys less than key, in O(log n) using the
+     * subtree sizes kept in each node.
+     * @param key key to rank; need not be in the tree
+     * @return number of items with smaller keys
+     */
+    public int rank(Object key) {
+		int rank = 0;
+		TFNode node = treeRoot;
+		while(node != null) {
+			// items before index and their children are all smaller; the
+			// child at index may hold smaller keys too
+			int index = FFGTE(node, key);
+			rank += index;
+			for(int i = 0; i < index && node.getChild(i) != null; i++) {
+				rank += node.getChild(i).getSubtreeSize();
+			}
+			node = node.getChild(index);
+		}
+		return rank;
+    }
+
+    /**
+     * Finds the item at a given position in key order, in O(log n).
+     * @param rank position of the item, from 0 to size() - 1
+     * @return the item, as a new Item
+     * @exception TwoFourTreeException if rank is out of range
+     */
+    public Item select(int rank) {
+		if(rank < 0 || rank >= size()) {
+			throw new TwoFourTreeException("rank out of range: " + rank);
+		}
+		TFNode node = treeRoot;
+		while(true) {
+			// skip whole children, and the items between them, until rank
+			// falls inside a child or on an item
+			int index = 0;
+			TFNode child = node.getChild(0);
+			while(true) {
+				int childSize = (child == null) ? 0 : child.getSubtreeSize();
+				if(rank < childSize) {
+					break;
+				}
+				rank -= childSize;
+				if(rank == 0) {
+					return new Item(node.getKey(index), node.getElement(index));
+				}
+				rank--;
+				index++;
+				child = node.getChild(index);
+			}
+			node = child;
+		}
+    }
+
+    /**
+     * Counts the items with keys at least lowKey and less than highKey, in
+     * O(log n).
+     * @param lowKey smallest key to count
+     * @param highKey first key not to count
+     * @return number of items in the range, or 0 if it is empty
+     */
+    public int countRange(Object lowKey, Object highKey) {
+		return Math.max(0, rank(highKey) - rank(lowKey));
+    }
+
+    /**
+     * Counts the items with keys less than key, or at most key, in
+     * O(log n).
+     * @param key key to count below; need not be in the tree
+     * @param orEqual true to count items equal to key as well
+     * @return number of items counted
+     */
+    int countBelow(Object key, boolean orEqual) {
+		if(!orEqual) {
+			return rank(key);
+		}
+		int rank = 0;
+		TFNode node = treeRoot;
+		while(node != null) {
+			// as rank, but step past the items equal to key as well
+			int index = FFGTE(node, key);
+			while(index < node.getNumItems() && treeComp.compare(node.getKey(index), key) == 0) {
+				index++;
+			}
+			rank += index;
+			for(int i = 0; i < index && node.getChild(i) != null; i++) {
+				rank += node.getChild(i).getSubtreeSize();
+			}
+			node = node.getChild(index);
+		}
+		return rank;
+    }
+
+    /**
+     * @param rank rank of the first item to visit
+     * @param count number of items to visit
+     * @param descending true to visit items from larger keys to smaller
+     * @return cursor over count items from the given rank
+     */
+    TreeCursor cursorAt(int rank, int count, boolean descending) {
+        return new TreeCursor(this, treeRoot, rank, count, descending);
+    }
+
+    // NavigableMap methods; lookups and updates by key are done here, and
+    // everything ordered goes through a view with no bounds
+
+    public V get(Object key) {
+		return findElement(key);
+    }
+
+    /**
+     * Replaces the element of the item with the given key, or inserts a new
+     * item if there is none, as Map.put does.  A single search finds either
+     * the item or the node to insert into; the call is timed as an insert.
+     * @param key key of the item
+     * @param value new element
+     * @return the old element, or null if the key was not in the tree
+     * @exception NullPointerException if key is null and the tree uses
+     * natural order
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+		checkKey(key);
+		if(metrics == null) {
+			return (V) untimedPut(key, value);
+		}
+		long start = System.nanoTime();
+		try {
+			return (V) untimedPut(key, value);
+		}
+		finally {
+			metrics.inserted(System.nanoTime() - start);
+		}
+    }
+
+	// put without timing
+	private Object untimedPut(Object key, Object element) {
+		if(treeRoot == null) {
+			untimedInsert(key, element);
+			return null;
+		}
+		TFNode node = searchFrom(treeRoot, key);
+		int index = FFGTE(node, key);
+		if(index != node.getNumItems() && treeComp.compare(node.getKey(index), key) == 0) {
+			Object returnElement = node.getElement(index);
+			node.setElement(index, element);
+			return returnElement;
+		}
+		if(topDown) {
+			// a top-down insert splits nodes as it goes, so it walks again
+			insertTopDown(key, element);
+		}else {
+			// search ended at the leaf the key belongs in
+			insertAt(node, key, element);
+		}
+		return null;
+	}
+
+    /**
+     * Removes the item with the given key, as Map.remove does.  A single
+     * search finds the item; the call is timed as a remove.
+     * @param key key of the item
+     * @return its element, or null if the key was not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+		if(metrics == null) {
+			return (V) removeIfPresent(key, null);
+		}
+		long start = System.nanoTime();
+		try {
+			return (V) removeIfPresent(key, null);
+		}
+		finally {
+			metrics.removed(System.nanoTime() - start);
+		}
+    }
+
+	// Map.remove without timing; returns missing if the key is missing
+	private Object removeIfPresent(Object key, Object missing) {
+		if(treeRoot == null) {
+			return missing;
+		}
+		TFNode node = searchFrom(treeRoot, key);
+		int index = FFGTE(node, key);
+		if(index == node.getNumItems() || treeComp.compare(node.getKey(index), key) != 0) {
+			return missing;
+		}
+		if(topDown) {
+			// a top-down remove refills nodes as it goes, so it walks again
+			return removeTopDown(key);
+		}
+		return removeAt(node, index);
+	}
+
+	// natural order cannot compare a null key, so refuse it before it is
+	// in the tree, as TreeMap does
+	private void checkKey(Object key) {
+		if(comparator() == null) {
+			Objects.requireNonNull(key);
+		}
+	}
+
+    public void clear() {
+        treeRoot = null;
+        modCount++;
+    }
+
+    /**
+     * @return the order of the keys, or null for their natural order
+     */
+    @SuppressWarnings("unchecked")
+    public java.util.Comparator<? super K> comparator() {
+        if (treeComp instanceof ComparatorAdapter) {
+            return (java.util.Comparator<? super K>) ((ComparatorAdapter) treeComp).getOrder();
+        }
+        if (keyOrder == null) {
+            keyOrder = (key1, key2) -> treeComp.compare(key1, key2);
+        }
+        return keyOrder;
+    }
+
+    private TwoFourSubMap<K,V> view() {
+        if (fullView == null) {
+            fullView = new TwoFourSubMap<K,V>(this, treeComp,
+                    true, null, false, true, null, false, false);
+        }
+        return fullView;
+    }
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        return view().entrySet();
+    }
+
+    public NavigableSet<K> keySet() {
+        return view().navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        return view().navigableKeySet();
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return view().descendingKeySet();
+    }
+
+    public NavigableMap<K,V> descendingMap() {
+        return view().descendingMap();
+    }
+
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return view().lowerEntry(key);
+    }
+
+    public K lowerKey(K key) {
+        return view().lowerKey(key);
+    }
+
+    public Map.Entry<K,V> floorEntry(K key) {
+        return view().floorEntry(key);
+    }
+
+    public K floorKey(K key) {
+        return view().floorKey(key);
+    }
+
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return view().ceilingEntry(key);
+    }
+
+    public K ceilingKey(K key) {
+        return view().ceilingKey(key);
+    }
+
+    public Map.Entry<K,V> higherEntry(K key) {
+        return view().higherEntry(key);
+    }
+
+    public K higherKey(K key) {
+        return view().higherKey(key);
+    }
+
+    public Map.Entry<K,V> firstEntry() {
+        return view().firstEntry();
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        return view().lastEntry();
+    }
+
+    public K firstKey() {
+        return view().firstKey();
+    }
+
+    public K lastKey() {
+        return view().lastKey();
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        return view().pollFirstEntry();
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        return view().pollLastEntry();
+    }
+
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return view().subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return view().headMap(toKey, inclusive);
+    }
+
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return view().tailMap(fromKey, inclusive);
+    }
+
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Applies a batch of inserts and removes.  The mutations are sorted by
+     * key, and each search starts from the node the previous one ended at,
+     * climbing only as far as needed to reach a subtree that holds the new
+     * key, so keys that are close together share most of the walk.  A
+     * top-down tree splits and refills nodes on its way down from the root,
+     * so there each mutation walks from the root, in key order.  Removes of
+     * keys not in the tree are skipped.  With metrics on, each mutation is
+     * timed as an insert or a remove.
+     * @param batch mutations to apply; left unchanged
+     * @return counts of applied and skipped mutations and the time taken
+     * @exception NullPointerException if a key is null and the tree orders
+     * keys naturally; then nothing in the batch is applied
+     */
+    public BatchResult applyBatch(MutationBatch batch) {
+		long startTime = System.nanoTime();
+		for(int i = 0; i < batch.size(); i++) {
+			checkKey(batch.getKey(i));
+		}
+		int[] order = batch.sortedOrder(treeComp);
+		int applied = 0;
+		TFNode finger = null;
+
+		for(int i = 0; i < order.length; i++) {
+			int mutation = order[i];
+			Object key = batch.getKey(mutation);
+			boolean remove = batch.isRemove(mutation);
+			long mutationStart = (metrics == null) ? 0 : System.nanoTime();
+			boolean done = true;
+
+			if(topDown) {
+				if(remove) {
+					done = (removeIfPresent(key, NOT_FOUND) != NOT_FOUND);
+				}else {
+					insertTopDown(key, batch.getElement(mutation));
+				}
+			}else if(treeRoot == null && remove) {
+				done = false;
+			}else {
+				if(treeRoot == null) {
+					treeRoot = nodePool.acquire();
+				}
+				TFNode node = searchFrom(fingerStart(finger, key), key);
+				finger = node;
+				if(remove) {
+					int index = FFGTE(node, key);
+					done = (index != node.getNumItems() && treeComp.compare(node.getKey(index), key) == 0);
+					if(done) {
+						removeAt(node, index);
+					}
+				}else {
+					insertAt(node, key, batch.getElement(mutation));
+				}
+			}
+
+			if(metrics != null) {
+				if(remove) {
+					metrics.removed(System.nanoTime() - mutationStart);
+				}else {
+					metrics.inserted(System.nanoTime() - mutationStart);
+				}
+			}
+			if(done) {
+				applied++;
+			}
+		}
+		return new BatchResult(applied, order.length - applied, System.nanoTime() - startTime);
+    }
+
+	/**
+	 * Inserts an item into the node search found for its key, then fixes
+	 * any overflow.
+	 * 
+	 * @param node node returned by search for key
+	 * @param key key of item to insert
+	 * @param element element of item to insert
+	 */
+	private void insertAt(TFNode node, Object key, Object element) {
+		modCount++;
+		int index = FFGTE(node, key);
+		if(index != node.getNumItems()) {
+			// external node that contains a duplicate
+			if(node.getChild(0) == null) {
+				node.insertEntry(index, key, element);
+			// internal node that contains a duplicate
+			}else {
+				node = getInOrderSuccessor(node, index);
+				node.insertEntry(0, key, element);
+			}
+		// if we are at last index
+		}else {
+			node.insertEntry(index, key, element);
+		}
+
+		addToSubtreeSizes(node, 1);
+		fixOverflow(node);
+	}
+
+	/**
+	 * Removes the item at index of node, then fixes any underflow.
+	 * 
+	 * @param node node holding the item
+	 * @param index index of the item in node
+	 * @return element of the removed item
+	 */
+	private Object removeAt(TFNode node, int index) {
+		modCount++;
+		Object returnData;
+		// if we are at an external node, simply remove data from node
+		if(node.getChild(0) == null) {
+			returnData = node.removeEntry(index);
+		// else, we are at an internal node, we must replace data with in-order
+		// successor
+		}else {
+			if(metrics != null) {
+				metrics.swappedSuccessor();
+			}
+			TFNode successor = getInOrderSuccessor(node, index);
+			Object successorKey = successor.getKey(0);
+			Object successorElement = successor.removeEntry(0);
+			returnData = node.replaceEntry(index, successorKey, successorElement);
+			node = successor;
+		}
+
+		addToSubtreeSizes(node, -1);
+		fixUnderflow(node);
+		return returnData;
+	}
+
+	/**
+	 * Adds delta to the subtree size of node and of each of its ancestors.
+	 * 
+	 * @param node lowest node whose subtree changed size
+	 * @param delta number of items added, or minus the number removed
+	 */
+	private void addToSubtreeSizes(TFNode node, int delta) {
+		while(node != null) {
+			node.setSubtreeSize(node.getSubtreeSize() + delta);
+			node = node.getParent();
+		}
+	}
+
+	/**
+	 * Finds where a batch search for key should start: the lowest ancestor
+	 * of the finger, or the finger itself, whose subtree is known to hold
+	 * every item with that key.  That is any node whose parent has keys on
+	 * both sides of it that are strictly less and strictly greater than key.
+	 * 
+	 * @param finger node the previous search ended at, or null
+	 * @param key key to search for next
+	 * @return node to start the search from
+	 */
+	private TFNode fingerStart(TFNode finger, Object key) {
+		// a node freed by a fusion or root collapse is no longer its
+		// parent's child, if it still has a parent at all
+		if(finger == null || (finger != treeRoot && (finger.getParent() == null
+				|| finger.getParent().getChild(WCIT(finger)) != finger))) {
+			return treeRoot;
+		}
+		TFNode node = finger;
+		while(node != treeRoot) {
+			TFNode parent = node.getParent();
+			int index = WCIT(node);
+			if(index > 0 && index < parent.getNumItems()
+					&& treeComp.compare(parent.getKey(index - 1), key) < 0
+					&& treeComp.compare(key, parent.getKey(index)) < 0) {
+				return node;
+			}
+			node = parent;
+		}
+		return node;
+	}
+
+    /**
+     * Fills an empty tree from keys that are already in ascending order.
+     * Instead of inserting one key at a time, packed nodes are built level
+     * by level, so the load takes linear time, never splits a node, and
+     * compares keys only to check their order.
+     * @param keys keys in ascending order; duplicates are allowed
+     * @param elements elements matching keys
+     * @param fillFactor fraction of a node to fill, above 0 and at most 1;
+     * nodes never get fewer than the minimum number of items
+     * @exception TwoFourTreeException if the tree is not empty, the keys are
+     * out of order or the arrays differ in length
+     */
+    public void bulkLoad(final Object[] keys, final Object[] elements, double fillFactor) {
+		if(keys.length != elements.length) {
+			throw new TwoFourTreeException("bulk load got " + keys.length
+					+ " keys but " + elements.length + " elements");
+		}
+		bulkLoad(new BulkSource() {
+			private int next = 0;
+
+			void advance() {
+				key = keys[next];
+				element = elements[next];
+				next++;
+			}
+		}, keys.length, fillFactor);
+    }
+
+    /**
+     * Fills an empty tree from the first count items of an iterator that
+     * yields them in ascending key order.  See bulkLoad(Object[], Object[],
+     * double).
+     * @param items items in ascending key order; duplicates are allowed
+     * @param count number of items to take from the iterator
+     * @param fillFactor fraction of a node to fill, above 0 and at most 1
+     * @exception TwoFourTreeException if the tree is not empty or the keys
+     * are out of order
+     * @exception java.util.NoSuchElementException if the iterator has fewer
+     * than count items
+     */
+    public void bulkLoad(final Iterator<? extends Item> items, int count, double fillFactor) {
+		bulkLoad(new BulkSource() {
+			void advance() {
+				Item item = items.next();
+				key = item.key();
+				element = item.element();
+			}
+		}, count, fillFactor);
+    }
+
+	// feeds bulkLoad one entry at a time, checking that keys do not decrease
+	private static abstract class BulkSource {
+		Object key;
+		Object element;
+		private boolean started = false;
+
+		abstract void advance();
+
+		void next(Comparator comp) {
+			Object previous = key;
+			advance();
+			if(started && comp.compare(key, previous) < 0) {
+				throw new TwoFourTreeException("bulk load keys out of order at " + key);
+			}
+			started = true;
+		}
+	}
+
+	private void bulkLoad(BulkSource source, int count, double fillFactor) {
+		if(treeRoot != null && treeRoot.getNumItems() > 0) {
+			throw new TwoFourTreeException("bulk load needs an empty tree");
+		}
+		if(!(fillFactor > 0 && fillFactor <= 1)) {
+			throw new TwoFourTreeException("fill factor out of range: " + fillFactor);
+		}
+		if(count == 0) {
+			return;
+		}
+		int fill = (int) Math.round(fillFactor * maxItems);
+		fill = Math.max(minItems, Math.min(maxItems, fill));
+
+		// plan the levels from the leaves up.  A level with s child slots
+		// (one more than the items it holds or, above the leaves, the nodes
+		// below it) gets enough nodes for fill items each, but never so many
+		// that a node drops under minItems; the slots are dealt out evenly
+		int[] levelNodes = new int[64];
+		int[] levelSlots = new int[64];
+		int height = 0;
+		int slots = count + 1;
+		while(true) {
+			int nodes = (slots + fill) / (fill + 1);
+			nodes = Math.max(1, Math.min(nodes, slots / (minItems + 1)));
+			levelNodes[height] = nodes;
+			levelSlots[height] = slots;
+			height++;
+			if(nodes == 1) {
+				break;
+			}
+			slots = nodes;
+		}
+
+		TFNode root = bulkBuild(source, height - 1, levelNodes, levelSlots, new int[height]);
+		root.setParent(null);
+		setRoot(root);
+		modCount++;
+    }
+
+	/**
+	 * Builds the next node of a level, and all its descendants, from the
+	 * next entries of source in order.
+	 * @param built nodes built so far on each level
+	 * @return the new node, with its parent not yet set
+	 */
+	private TFNode bulkBuild(BulkSource source, int level, int[] levelNodes,
+			int[] levelSlots, int[] built) {
+		int nodes = levelNodes[level];
+		int slots = levelSlots[level] / nodes;
+		if(built[level]++ < levelSlots[level] % nodes) {
+			slots++;
+		}
+
+		TFNode node = nodePool.acquire();
+		for(int i = 0; i < slots; i++) {
+			if(level > 0) {
+				TFNode child = bulkBuild(source, level - 1, levelNodes, levelSlots, built);
+				node.setChild(i, child);
+				child.setParent(node);
+			}
+			if(i < slots - 1) {
+				source.next(treeComp);
+				node.addEntry(i, source.key, source.element);
+			}
+		}
+		int size = node.getNumItems();
+		for(int i = 0; level > 0 && i <= node.getNumItems(); i++) {
+			size += node.getChild(i).getSubtreeSize();
+		}
+		node.setSubtreeSize(size);
+		return node;
+	}
+
+    public static void main(String[] args) {
+        Comparator myComp = new IntegerComparator();
+        TwoFourTree<Integer,Integer> myTree = new TwoFourTree<Integer,Integer>(myComp);
+
+        myTree.insertElement(47, 47);
+        myTree.insertElement(83, 83);
+        myTree.insertElement(22, 22);
+        myTree.insertElement(16, 16);
+        myTree.insertElement(49, 49);
+        myTree.insertElement(100, 100);
+        myTree.insertElement(38, 38);
+        myTree.insertElement(3, 3);
+        myTree.insertElement(53, 53);
+        myTree.insertElement(66, 66);
+        myTree.insertElement(19, 19);
+        myTree.insertElement(23, 23);
+        myTree.insertElement(24, 24);
+        myTree.insertElement(88, 88);
+        myTree.insertElement(1, 1);
+        myTree.insertElement(97, 97);
+        myTree.insertElement(94, 94);
+        myTree.insertElement(35, 35);
+        myTree.insertElement(51, 51);
 
 		//myTree.printAllElements();
 		//System.out.println("removing\n");
@@ -514,10 +1655,10 @@ public class TwoFourTree
         System.out.println("test 1: simple test done");
 
 		System.out.println();
-        myTree = new TwoFourTree(myComp);
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
         int testSize = 10000;
 
-		Random rng = new Random();
+		Random rng = new Random(1);
 		Queue<Integer> nums = new LinkedList<Integer>();
         for (int i = 0; i < testSize; i++) {
 			int j = rng.nextInt(testSize / 10);
@@ -536,7 +1677,7 @@ public class TwoFourTree
 				System.out.println("removing "+j);
 			}
 			//myTree.printAllElements();
-            int out = (int)myTree.removeElement(j);
+            int out = myTree.removeElement(j);
             if (out != j) {
                 throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + j);
             }
@@ -549,7 +1690,7 @@ public class TwoFourTree
 		myTree.printAllElements();
 
 		System.out.println();
-        myTree = new TwoFourTree(myComp);
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
         testSize = 1000;
         for (int i = 0; i < testSize; i++) {
             myTree.insertElement(0, 0);
@@ -557,7 +1698,7 @@ public class TwoFourTree
         System.out.println("removing");
 		int out;
         for (int i = testSize - 1; i >= 0; i--) {
-            out = (int)myTree.removeElement(0);
+            out = myTree.removeElement(0);
             if (out != 0) {
                 throw new TwoFourTreeException("main: wrong element removed: " + out);
             }
@@ -571,7 +1712,7 @@ public class TwoFourTree
         }
         System.out.println("removing");
         for (int i = testSize - 1; i >= 0; i--) {
-            out = (int)myTree.removeElement(i);
+            out = myTree.removeElement(i);
             if (out != i) {
                 throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
             }
@@ -585,7 +1726,7 @@ public class TwoFourTree
         }
         System.out.println("removing");
         for (int i = 0; i < testSize; i++) {
-            out = (int)myTree.removeElement(i);
+            out = myTree.removeElement(i);
             if (out != i) {
                 throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
             }
@@ -593,6 +1734,521 @@ public class TwoFourTree
         System.out.println("test 5: sorted order remove done");
 		myTree.printAllElements();
 
+		System.out.println();
+        myTree = new TwoFourTree<Integer,Integer>(myComp, 32);
+        testSize = 10000;
+        for (int i = 0; i < testSize; i++) {
+            myTree.insertElement(i, i);
+        }
+        System.out.println("removing");
+        for (int i = 0; i < testSize; i += 2) {
+            out = myTree.removeElement(i);
+            if (out != i) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
+            }
+        }
+        for (int i = testSize - 1; i > 0; i -= 2) {
+            out = myTree.removeElement(i);
+            if (out != i) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
+            }
+        }
+        System.out.println("test 6: order 32 B-tree done");
+		myTree.printAllElements();
+
+		System.out.println();
+        myTree = new TwoFourTree<Integer,Integer>(myComp, 4, true);
+        testSize = 10000;
+		nums = new LinkedList<Integer>();
+        for (int i = 0; i < testSize; i++) {
+			int j = rng.nextInt(testSize / 10);
+			nums.add(j);
+            myTree.insertElement(j, j);
+        }
+        System.out.println("removing");
+        for (int i = testSize - 1; i >= 0; i--) {
+			int j = nums.remove();
+            out = myTree.removeElement(j);
+            if (out != j) {
+                throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + j);
+            }
+        }
+        System.out.println("test 7: top-down random done");
+		myTree.printAllElements();
+
+		System.out.println();
+        for (int order : new int[] {3, 4, 5, 8, 64}) {
+            for (double fill : new double[] {0.01, 0.5, 0.75, 1.0}) {
+                for (testSize = 0; testSize < 300; testSize += 7) {
+                    List<Item> items = new ArrayList<Item>();
+                    for (int i = 0; i < testSize; i++) {
+                        items.add(new Item(i / 2, i));
+                    }
+                    myTree = new TwoFourTree<Integer,Integer>(myComp, order);
+                    myTree.bulkLoad(items.iterator(), testSize, fill);
+                    myTree.checkTree();
+                    for (int i = 0; i < testSize; i += 2) {
+                        myTree.insertElement(-i - 1, i);
+                    }
+                    for (int i = testSize - 1; i >= 0; i--) {
+                        out = myTree.removeElement(i / 2);
+                        if (out / 2 != i / 2) {
+                            throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
+                        }
+                    }
+                    for (int i = 0; i < testSize; i += 2) {
+                        out = myTree.removeElement(-i - 1);
+                        if (out != i) {
+                            throw new TwoFourTreeException("main: wrong element removed: " + out +" ; " + i);
+                        }
+                    }
+                }
+            }
+        }
+        testSize = 1000000;
+        Integer[] keys = new Integer[testSize];
+        for (int i = 0; i < testSize; i++) {
+            keys[i] = i;
+        }
+        long startTime = System.nanoTime();
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
+        for (int i = 0; i < testSize; i++) {
+            myTree.insertElement(keys[i], keys[i]);
+        }
+        long insertTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
+        myTree.bulkLoad(keys, keys, 1.0);
+        long loadTime = System.nanoTime() - startTime;
+        for (int i = 0; i < testSize; i++) {
+            if (myTree.findElement(i) != keys[i]) {
+                throw new TwoFourTreeException("main: bulk loaded key missing: " + i);
+            }
+        }
+        System.out.println("inserting " + testSize + " sorted keys: " + insertTime / 1000000
+                + " ms, bulk loading them: " + loadTime / 1000000 + " ms");
+        System.out.println("test 8: bulk load done");
+
+		System.out.println();
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
+        myTree.bulkLoad(keys, keys, 0.75);
+        MutationBatch batch = new MutationBatch();
+        for (int i = 0; i < 5000; i++) {
+            int j = rng.nextInt(testSize);
+            batch.remove(j);
+            batch.insert(j, -j);
+            batch.remove(testSize + j);
+        }
+        BatchResult result = myTree.applyBatch(batch);
+        if (result.getApplied() != 10000 || result.getSkipped() != 5000) {
+            throw new TwoFourTreeException("main: wrong batch result: " + result);
+        }
+        for (int i = 0; i < batch.size(); i += 3) {
+            Object key = batch.getKey(i);
+            if ((int)myTree.findElement(key) != -(int)key) {
+                throw new TwoFourTreeException("main: batch not applied at " + key);
+            }
+        }
+        System.out.println("batch " + result);
+
+        // the same batch on a top-down tree, timed by its metrics
+        TwoFourTree<Integer,Integer> topDownTree = new TwoFourTree<Integer,Integer>(myComp, 4, true);
+        topDownTree.bulkLoad(keys, keys, 0.75);
+        TreeMetrics batchMetrics = new TreeMetrics();
+        topDownTree.setMetrics(batchMetrics);
+        result = topDownTree.applyBatch(batch);
+        topDownTree.checkTree();
+        if (result.getApplied() != 10000 || result.getSkipped() != 5000
+                || batchMetrics.getInsertHistogram().getCount() != 5000
+                || batchMetrics.getRemoveHistogram().getCount() != 10000) {
+            throw new TwoFourTreeException("main: wrong top-down batch result: " + result);
+        }
+        for (int i = 0; i < batch.size(); i += 3) {
+            Object key = batch.getKey(i);
+            if (!topDownTree.findElement(key).equals(myTree.findElement(key))) {
+                throw new TwoFourTreeException("main: top-down batch not applied at " + key);
+            }
+        }
+
+        // a null key under natural order refuses the whole batch
+        TwoFourTree<Integer,Integer> naturalTree = new TwoFourTree<Integer,Integer>();
+        naturalTree.insertElement(1, 1);
+        MutationBatch nullBatch = new MutationBatch();
+        nullBatch.insert(2, 2);
+        nullBatch.insert(null, 0);
+        try {
+            naturalTree.applyBatch(nullBatch);
+            throw new TwoFourTreeException("main: batch took a null key");
+        }
+        catch (NullPointerException exc) {
+            // refused before anything was applied
+        }
+        if (naturalTree.size() != 1) {
+            throw new TwoFourTreeException("main: refused batch changed the tree");
+        }
+        System.out.println("test 9: batch done");
+
+		System.out.println();
+        myTree = new TwoFourTree<Integer,Integer>(myComp, 5);
+        for (int i = 0; i < 2000; i++) {
+            myTree.insertElement(rng.nextInt(500), i);
+        }
+        int count = 0;
+        Object previous = null;
+        for (Item item : myTree) {
+            if (previous != null && myComp.isLessThan(item.key(), previous)) {
+                throw new TwoFourTreeException("main: iterator out of order at " + item.key());
+            }
+            previous = item.key();
+            count++;
+        }
+        if (count != 2000) {
+            throw new TwoFourTreeException("main: iterator saw " + count + " items");
+        }
+        for (int low = -10; low < 520; low += 13) {
+            int high = low + rng.nextInt(60);
+            int inRange = 0;
+            for (TreeCursor all = myTree.iterator(); all.hasNext(); all.advance()) {
+                int key = (int)all.getKey();
+                if (key >= low && key < high) {
+                    inRange++;
+                }
+            }
+            count = 0;
+            for (TreeCursor cursor = myTree.range(low, high); cursor.hasNext(); cursor.advance()) {
+                int key = (int)cursor.getKey();
+                if (key < low || key >= high) {
+                    throw new TwoFourTreeException("main: range [" + low + ", " + high + ") gave " + key);
+                }
+                count++;
+            }
+            if (count != inRange) {
+                throw new TwoFourTreeException("main: range [" + low + ", " + high + ") gave "
+                        + count + " items, not " + inRange);
+            }
+        }
+        if (myTree.headRange(-1).hasNext() || myTree.tailRange(500).hasNext()) {
+            throw new TwoFourTreeException("main: empty range gave items");
+        }
+        if (new TwoFourTree<Integer,Integer>(myComp).iterator().hasNext()) {
+            throw new TwoFourTreeException("main: empty tree gave items");
+        }
+        System.out.println("test 10: iterator and ranges done");
+
+		System.out.println();
+        for (int order : new int[] {3, 4, 7}) {
+            for (boolean mode : new boolean[] {false, true}) {
+                if (mode && order % 2 != 0) {
+                    continue;
+                }
+                myTree = new TwoFourTree<Integer,Integer>(myComp, order, mode);
+                nums = new LinkedList<Integer>();
+                int[] counts = new int[300];
+                for (int i = 0; i < 3000; i++) {
+                    int j = rng.nextInt(300);
+                    if (counts[j] > 0 && rng.nextInt(3) == 0) {
+                        myTree.removeElement(j);
+                        counts[j]--;
+                    }
+                    else {
+                        myTree.insertElement(j, j);
+                        counts[j]++;
+                    }
+                }
+                myTree.checkTree();
+                int below = 0;
+                for (int j = 0; j < 300; j++) {
+                    if (myTree.rank(j) != below) {
+                        throw new TwoFourTreeException("main: rank of " + j + " is "
+                                + myTree.rank(j) + ", not " + below);
+                    }
+                    for (int k = 0; k < counts[j]; k++) {
+                        if ((int)myTree.select(below + k).key() != j) {
+                            throw new TwoFourTreeException("main: select " + (below + k) + " is not " + j);
+                        }
+                    }
+                    below += counts[j];
+                }
+                if (myTree.size() != below || myTree.countRange(100, 200) != myTree.rank(200) - myTree.rank(100)) {
+                    throw new TwoFourTreeException("main: size is " + myTree.size() + ", not " + below);
+                }
+            }
+        }
+        System.out.println("test 11: rank and select done");
+
+		System.out.println();
+        testSize = 10000;
+        for (boolean mode : new boolean[] {false, true}) {
+            myTree = new TwoFourTree<Integer,Integer>(myComp, 4, mode);
+            TreeMetrics metrics = new TreeMetrics();
+            myTree.setMetrics(metrics);
+            nums = new LinkedList<Integer>();
+            for (int i = 0; i < testSize; i++) {
+                int j = rng.nextInt(testSize / 10);
+                nums.add(j);
+                myTree.insertElement(j, j);
+            }
+            for (int i = 0; i < testSize; i++) {
+                myTree.findElement(i);
+            }
+            while (!nums.isEmpty()) {
+                myTree.removeElement(nums.remove());
+            }
+            if (metrics.getInsertHistogram().getCount() != testSize
+                    || metrics.getFindHistogram().getCount() != testSize
+                    || metrics.getRemoveHistogram().getCount() != testSize
+                    || metrics.getSplits() == 0 || metrics.getTransfers() == 0
+                    || metrics.getFusions() == 0 || metrics.getSuccessorSwaps() == 0
+                    || metrics.getSearches() < 3 * testSize
+                    || metrics.getRootGrowths() == 0
+                    || metrics.getRootGrowths() != metrics.getRootShrinks()) {
+                throw new TwoFourTreeException("main: metrics are off: " + metrics);
+            }
+            System.out.println((mode ? "top-down " : "bottom-up ") + metrics);
+
+            try {
+                metrics.register("main");
+                ObjectName name = new ObjectName("termproject:type=TreeMetrics,name=\"main\"");
+                Object splits = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Splits");
+                if (!splits.equals(metrics.getSplits())) {
+                    throw new TwoFourTreeException("main: JMX shows " + splits + " splits");
+                }
+                metrics.unregister();
+            }
+            catch (JMException exc) {
+                throw new TwoFourTreeException("main: JMX failed: " + exc);
+            }
+        }
+
+        // lookups with metrics off and on
+        myTree = new TwoFourTree<Integer,Integer>(myComp);
+        for (int i = 0; i < testSize; i++) {
+            myTree.insertElement(i, i);
+        }
+        for (int run = 0; run < 3; run++) {
+            myTree.setMetrics(null);
+            startTime = System.nanoTime();
+            for (int r = 0; r < 100; r++) {
+                for (int i = 0; i < testSize; i++) {
+                    myTree.findElement(i);
+                }
+            }
+            long offTime = System.nanoTime() - startTime;
+            myTree.setMetrics(new TreeMetrics());
+            startTime = System.nanoTime();
+            for (int r = 0; r < 100; r++) {
+                for (int i = 0; i < testSize; i++) {
+                    myTree.findElement(i);
+                }
+            }
+            long onTime = System.nanoTime() - startTime;
+            System.out.println("lookups: metrics off " + offTime / 1000000 + " ms, on "
+                    + onTime / 1000000 + " ms");
+        }
+        System.out.println("test 12: metrics done");
+
+		System.out.println();
+        TwoFourTree<String,Integer> natural = new TwoFourTree<String,Integer>();
+        TwoFourTree<String,Integer> reversed = new TwoFourTree<String,Integer>(
+                java.util.Comparator.<String>reverseOrder());
+        for (int i = 0; i < 1000; i++) {
+            String word = "word " + rng.nextInt(500);
+            natural.insertElement(word, i);
+            reversed.insertElement(word, i);
+        }
+        natural.checkTree();
+        reversed.checkTree();
+        String previousWord = null;
+        for (TreeCursor cursor = natural.iterator(); cursor.hasNext(); cursor.advance()) {
+            String word = (String) cursor.getKey();
+            if (previousWord != null && previousWord.compareTo(word) > 0) {
+                throw new TwoFourTreeException("main: natural order gave " + word + " after " + previousWord);
+            }
+            previousWord = word;
+        }
+        previousWord = null;
+        for (TreeCursor cursor = reversed.iterator(); cursor.hasNext(); cursor.advance()) {
+            String word = (String) cursor.getKey();
+            if (previousWord != null && previousWord.compareTo(word) < 0) {
+                throw new TwoFourTreeException("main: reversed order gave " + word + " after " + previousWord);
+            }
+            previousWord = word;
+        }
+        if (natural.size() != 1000 || reversed.findElement("word 7") == null
+                != (natural.findElement("word 7") == null)) {
+            throw new TwoFourTreeException("main: java.util.Comparator trees disagree");
+        }
+        System.out.println("test 13: java.util.Comparator and natural order done");
+
+		System.out.println();
+        // the tree as a NavigableMap should behave just like a TreeMap
+        TwoFourTree<Integer,Integer> map = new TwoFourTree<Integer,Integer>(myComp);
+        TreeMap<Integer,Integer> expected = new TreeMap<Integer,Integer>();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = rng.nextInt(2000);
+            switch (rng.nextInt(4)) {
+                case 0:
+                case 1:
+                    checkSame("put", map.put(key, i), expected.put(key, i));
+                    break;
+                case 2:
+                    checkSame("remove", map.remove(key), expected.remove(key));
+                    break;
+                default:
+                    checkSame("floorKey", map.floorKey(key), expected.floorKey(key));
+                    checkSame("ceilingEntry", map.ceilingEntry(key), expected.ceilingEntry(key));
+                    checkSame("lowerKey", map.lowerKey(key), expected.lowerKey(key));
+                    checkSame("higherEntry", map.higherEntry(key), expected.higherEntry(key));
+                    checkSame("get", map.get(key), expected.get(key));
+                    break;
+            }
+        }
+        map.checkTree();
+        checkSame("map", map, expected);
+        checkSame("keys", new ArrayList<Integer>(map.keySet()), new ArrayList<Integer>(expected.keySet()));
+        checkSame("descending keys", new ArrayList<Integer>(map.descendingKeySet()),
+                new ArrayList<Integer>(expected.descendingKeySet()));
+        for (int i = 0; i < 200; i++) {
+            int low = rng.nextInt(2200) - 100;
+            int high = low + rng.nextInt(400);
+            boolean lowInclusive = rng.nextBoolean();
+            boolean highInclusive = rng.nextBoolean();
+            NavigableMap<Integer,Integer> sub = map.subMap(low, lowInclusive, high, highInclusive);
+            NavigableMap<Integer,Integer> expectedSub = expected.subMap(low, lowInclusive, high, highInclusive);
+            checkSame("subMap", new ArrayList<Map.Entry<Integer,Integer>>(sub.entrySet()),
+                    new ArrayList<Map.Entry<Integer,Integer>>(expectedSub.entrySet()));
+            checkSame("descending subMap", new ArrayList<Integer>(sub.descendingMap().keySet()),
+                    new ArrayList<Integer>(expectedSub.descendingMap().keySet()));
+            checkSame("subMap floor", sub.floorKey(high + 50), expectedSub.floorKey(high + 50));
+            checkSame("subMap ceiling", sub.ceilingKey(low - 50), expectedSub.ceilingKey(low - 50));
+            checkSame("descending floor", sub.descendingMap().floorKey(low + 7),
+                    expectedSub.descendingMap().floorKey(low + 7));
+            checkSame("headMap", map.headMap(high).size(), expected.headMap(high).size());
+            checkSame("tailMap", map.tailMap(low, false).lastEntry(), expected.tailMap(low, false).lastEntry());
+        }
+        // removing through views and iterators reaches the tree
+        for (Iterator<Integer> it = map.keySet().iterator(); it.hasNext(); ) {
+            if (it.next() % 3 == 0) {
+                it.remove();
+            }
+        }
+        expected.keySet().removeIf(key -> key % 3 == 0);
+        for (Iterator<Integer> it = map.descendingKeySet().iterator(); it.hasNext(); ) {
+            if (it.next() % 5 == 0) {
+                it.remove();
+            }
+        }
+        expected.keySet().removeIf(key -> key % 5 == 0);
+        map.subMap(500, 700).clear();
+        expected.subMap(500, 700).clear();
+        // changing the tree other than through an iterator stops it
+        for (int change = 0; change < 3; change++) {
+            Iterator<Integer> it = map.keySet().iterator();
+            it.next();
+            if (change == 0) {
+                map.put(-1, -1);
+            }
+            else if (change == 1) {
+                map.remove(-1);
+            }
+            else {
+                map.put(-2, -2);
+                map.remove(-2);
+            }
+            try {
+                it.next();
+                throw new TwoFourTreeException("main: iterator missed change " + change);
+            }
+            catch (java.util.ConcurrentModificationException exc) {
+                // expected
+            }
+        }
+        TreeCursor stale = map.iterator();
+        map.put(-3, -3);
+        map.remove(-3);
+        try {
+            stale.advance();
+            throw new TwoFourTreeException("main: cursor missed a change");
+        }
+        catch (java.util.ConcurrentModificationException exc) {
+            // expected
+        }
+        // replacing elements is not a change of shape
+        for (Map.Entry<Integer,Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        for (Map.Entry<Integer,Integer> entry : expected.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        map.checkTree();
+        checkSame("map after removes", map, expected);
+        while (!expected.isEmpty()) {
+            checkSame("pollFirstEntry", map.pollFirstEntry(), expected.pollFirstEntry());
+            checkSame("pollLastEntry", map.pollLastEntry(), expected.pollLastEntry());
+        }
+        if (!map.isEmpty() || map.firstEntry() != null) {
+            throw new TwoFourTreeException("main: map not empty after polling");
+        }
+        System.out.println("test 14: NavigableMap done");
+
+		System.out.println();
+        // lookups on an empty tree miss instead of throwing
+        map = new TwoFourTree<Integer,Integer>(myComp);
+        checkSame("empty findElement", map.findElement(5), null);
+        checkSame("empty containsKey", map.containsKey(5), false);
+        checkSame("empty getOrDefault", map.getOrDefault(5, -1), -1);
+        for (int i = 0; i < testSize; i++) {
+            map.insertElement(2 * i, (i % 10 == 0) ? null : i);
+        }
+        for (int i = 0; i < 2 * testSize; i++) {
+            boolean present = (i % 2 == 0);
+            Integer element = (!present || i % 20 == 0) ? null : i / 2;
+            checkSame("findElement " + i, map.findElement(i), element);
+            checkSame("containsKey " + i, map.containsKey(i), present);
+            checkSame("getOrDefault " + i, map.getOrDefault(i, -1), present ? element : Integer.valueOf(-1));
+        }
+        TwoFourTree<String,Integer> strings = new TwoFourTree<String,Integer>();
+        for (int i = 0; i < 2; i++) {
+            try {
+                if (i == 0) {
+                    strings.put(null, 1);
+                }
+                else {
+                    strings.insertElement(null, 1);
+                }
+                throw new TwoFourTreeException("main: natural order took a null key");
+            }
+            catch (NullPointerException exc) {
+                // expected
+            }
+        }
+        strings.put("a", 1);
+        if (strings.size() != 1 || strings.get("a") != 1) {
+            throw new TwoFourTreeException("main: tree broken after refusing a null key");
+        }
+        // Map.put and Map.remove are timed as the writes they are, with
+        // one search each
+        TreeMetrics mapMetrics = new TreeMetrics();
+        map.setMetrics(mapMetrics);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+            map.remove(i + 1);
+        }
+        if (mapMetrics.getFindHistogram().getCount() != 0
+                || mapMetrics.getInsertHistogram().getCount() != 1000
+                || mapMetrics.getRemoveHistogram().getCount() != 1000
+                || mapMetrics.getSearches() != 2000) {
+            throw new TwoFourTreeException("main: put and remove recorded " + mapMetrics);
+        }
+        map.setMetrics(null);
+        map.checkTree();
+        System.out.println("test 15: single-pass lookups done");
+    }
+
+    private static void checkSame(String what, Object actual, Object expected) {
+        if (actual == null ? expected != null : !actual.equals(expected)) {
+            throw new TwoFourTreeException("main: " + what + " gave " + actual + ", not " + expected);
+        }
     }
 
     public void printAllElements() {
@@ -624,7 +2280,7 @@ public class TwoFourTree
     public void printTFNode(TFNode node) {
         int numItems = node.getNumItems();
         for (int i = 0; i < numItems; i++) {
-            System.out.print(((Item) node.getItem(i)).element() + " ");
+            System.out.print(node.getElement(i) + " ");
         }
         System.out.println();
     }
@@ -652,6 +2308,11 @@ public class TwoFourTree
                 System.out.println("Child to parent confusion");
                 printTFNode(start);
             }
+            // the recorded slot must match the one it was found in
+            else if (childIndex != start.getParentIndex()) {
+                System.out.println("Parent index out of date");
+                printTFNode(start);
+            }
         }
 
         if (start.getChild(0) != null) {
@@ -677,8 +2338,16 @@ public class TwoFourTree
         }
 
         int numChildren = start.getNumItems() + 1;
+        int subtreeSize = start.getNumItems();
         for (int childIndex = 0; childIndex < numChildren; childIndex++) {
             checkTreeFromNode(start.getChild(childIndex));
+            if (start.getChild(childIndex) != null) {
+                subtreeSize += start.getChild(childIndex).getSubtreeSize();
+            }
+        }
+        if (subtreeSize != start.getSubtreeSize()) {
+            System.out.println("Subtree size out of date");
+            printTFNode(start);
         }
 
     }
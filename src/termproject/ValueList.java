@@ -0,0 +1,54 @@
+package termproject;
+
+import java.util.Arrays;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: The elements stored under one key of a TwoFourMultimap, in
+ * the order they were inserted.  Elements go into a plain array that grows
+ * by half when full, and come off the end.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+class ValueList {
+
+    private Object[] listElements;
+    private int numElements = 0;
+
+    ValueList(Object first, Object second) {
+        listElements = new Object[] {first, second};
+        numElements = 2;
+    }
+
+    ValueList(Object only) {
+        listElements = new Object[] {only, null};
+        numElements = 1;
+    }
+
+    int size() {
+        return numElements;
+    }
+
+    void add(Object element) {
+        if (numElements == listElements.length) {
+            listElements = Arrays.copyOf(listElements, numElements + (numElements >> 1) + 1);
+        }
+        listElements[numElements++] = element;
+    }
+
+        // the element pop would return
+    Object last() {
+        return listElements[numElements-1];
+    }
+
+    Object pop() {
+        Object element = listElements[--numElements];
+        listElements[numElements] = null;
+        return element;
+    }
+
+    Object[] toArray() {
+        return Arrays.copyOf(listElements, numElements);
+    }
+}
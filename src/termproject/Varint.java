@@ -0,0 +1,62 @@
+package termproject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: Variable-length integers: seven bits a byte, low bits
+ * first, with the high bit set on every byte but the last.  Signed values
+ * are zigzag encoded first, so small negative numbers stay short too.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public final class Varint {
+
+    /** Most bytes a long can take. */
+    public static final int MAX_SIZE = 10;
+
+    private Varint() {
+    }
+
+    /**
+     * @return bytes putUnsigned writes for value
+     */
+    public static int unsignedSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void putUnsigned(long value, ByteBuffer out) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static long getUnsigned(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new TwoFourTreeException("varint longer than " + MAX_SIZE + " bytes");
+    }
+
+    public static void putSigned(long value, ByteBuffer out) {
+        putUnsigned((value << 1) ^ (value >> 63), out);
+    }
+
+    public static long getSigned(ByteBuffer in) {
+        long value = getUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
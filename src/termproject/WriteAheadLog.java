@@ -0,0 +1,644 @@
+package termproject;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Title:        Term Project 2-4 Trees
+ * Description: An append-only log of dictionary inserts and removes, kept so
+ * an in-memory dictionary can be rebuilt after a restart: load the last
+ * snapshot, then replay the log into it.  LoggedDictionary writes to it.
+ *
+ * Records are appended to an in-memory buffer under a short lock and get a
+ * sequence number.  Writing the buffer out and forcing it to disk happen
+ * outside the lock, one flush at a time; whoever needs a flush while one is
+ * running waits for it and then flushes everything appended meanwhile in
+ * one go.  This is group commit: with many writers, one force covers many
+ * records.  How long a change waits is set by its Durability.
+ *
+ * Each record is its payload length, a CRC-32 of the payload, and the
+ * payload: an operation byte, the key and, for an insert, the element, as
+ * encoded by the codecs.  A crash can leave a torn record at the end of the
+ * file; replay stops at the first record that is short or fails its
+ * checksum, and opening the log cuts the file back to the records before it.
+ * A write or force that fails cuts the file back the same way and keeps the
+ * records it held in memory, but the log is broken from then on: every later
+ * commit and sync throws, until a truncate once a snapshot holds them all.
+ * Copyright:    Copyright (c) 2017
+ * @author Joel Beckmeyer & Daniel Parker
+ * @version 1.0
+ */
+public class WriteAheadLog
+        implements Closeable {
+
+    public static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private static final byte INSERT = 1;
+    private static final byte INSERT_NULL = 2;
+    private static final byte REMOVE = 3;
+    private static final int RECORD_HEADER_SIZE = 8;
+    // with Durability.NONE, buffered records are written out past this size
+    private static final int WRITE_THRESHOLD = 64 << 10;
+
+    private final FileChannel channel;
+    private final Codec keyCodec;
+    private final Codec elementCodec;
+    private final Durability durability;
+    private final CRC32 checksum = new CRC32();
+    private final Thread flusher;
+    // released by close; the flusher is not interrupted, since an interrupt
+    // during a force would close the channel under it
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    // all below are guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(WRITE_THRESHOLD);
+    private ByteBuffer spare = ByteBuffer.allocate(WRITE_THRESHOLD);
+    private long appendedSequence = 0;
+    private long writtenSequence = 0;
+    private long durableSequence = 0;
+    private boolean flushing = false;
+    private boolean closed = false;
+    // why an earlier write or force failed
+    private IOException failure = null;
+    // length of the file up to the records written out so far; changed
+    // only by the flushing thread and truncate
+    private long writtenEnd;
+
+    public WriteAheadLog(File file, Codec keyCodec, Codec elementCodec,
+            Durability durability) throws IOException {
+        this (file, keyCodec, elementCodec, durability, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens a log file, creating it if it does not exist, and cuts off any
+     * torn record at its end.
+     * @param file file holding the log
+     * @param keyCodec codec for keys
+     * @param elementCodec codec for elements
+     * @param durability when appended changes reach the disk
+     * @param flushIntervalMillis time between forces for Durability.PERIODIC
+     */
+    public WriteAheadLog(File file, Codec keyCodec, Codec elementCodec,
+            Durability durability, final long flushIntervalMillis) throws IOException {
+        this.keyCodec = keyCodec;
+        this.elementCodec = elementCodec;
+        this.durability = durability;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = scan(null);
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        writtenEnd = validEnd;
+
+        if (durability == Durability.PERIODIC) {
+            flusher = new Thread(new Runnable() {
+                public void run() {
+                    flushPeriodically(flushIntervalMillis);
+                }
+            }, "WriteAheadLog flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        else {
+            flusher = null;
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Applies every whole record in the log to a dictionary, in order.  Meant
+     * for a dictionary just loaded from the snapshot the log continues, and
+     * for a log nothing has been appended to yet.
+     * @param target dictionary to apply the records to
+     * @return number of records applied
+     */
+    public int replay(Dictionary<Object,Object> target) throws IOException {
+        synchronized (this) {
+            if (appendedSequence != 0) {
+                throw new TwoFourTreeException("replay after appending to the log");
+            }
+        }
+        int[] applied = {0};
+        scan(target, applied);
+        return applied[0];
+    }
+
+    /**
+     * Buffers an insert.  Call commit with the result once the insert has
+     * been applied.
+     * @return sequence number of the record
+     */
+    public long logInsert(Object key, Object element) {
+        return append((element == null) ? INSERT_NULL : INSERT, key, element);
+    }
+
+    /**
+     * Buffers a remove.  Call commit with the result once the remove has
+     * been applied.
+     * @return sequence number of the record
+     */
+    public long logRemove(Object key) {
+        return append(REMOVE, key, null);
+    }
+
+    /**
+     * Checks that the codecs can encode an insert, so it can be logged after
+     * it has been applied.
+     * @exception RuntimeException whatever the codecs throw for a key or
+     * element they cannot encode
+     */
+    public void checkInsert(Object key, Object element) {
+        payloadSize((element == null) ? INSERT_NULL : INSERT, key, element);
+    }
+
+    /**
+     * Waits for as much durability as the log promises for a record: for
+     * Durability.SYNC, until it is forced to disk.
+     * @param sequence sequence number of the record
+     * @exception UncheckedIOException if a write or force of the log has
+     * failed
+     */
+    public void commit(long sequence) {
+        checkFailure();
+        if (durability == Durability.SYNC) {
+            flushTo(sequence, true);
+        }
+        else if (durability == Durability.NONE && bufferedBytes() >= WRITE_THRESHOLD) {
+            flushTo(sequence, false);
+        }
+    }
+
+    /**
+     * Writes out and forces every record appended so far.
+     * @exception UncheckedIOException if a write or force of the log has
+     * failed
+     */
+    public void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        flushTo(sequence, true);
+    }
+
+    /**
+     * Empties the log, once a snapshot holding all of its changes has been
+     * written.  Nothing may be appended meanwhile.  This mends a log whose
+     * write failed, since the snapshot has the records it lost.
+     */
+    public void truncate() throws IOException {
+        synchronized (this) {
+            waitForFlush();
+            pending.clear();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            writtenEnd = 0;
+            writtenSequence = appendedSequence;
+            durableSequence = appendedSequence;
+            failure = null;
+        }
+    }
+
+    /**
+     * Forces every record to disk and closes the file.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (flusher != null) {
+            closing.countDown();
+            try {
+                flusher.join();
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    private int payloadSize(byte operation, Object key, Object element) {
+        int payloadSize = 1 + keyCodec.encodedSize(key);
+        if (operation == INSERT) {
+            payloadSize += elementCodec.encodedSize(element);
+        }
+        return payloadSize;
+    }
+
+    private synchronized long append(byte operation, Object key, Object element) {
+        if (closed) {
+            throw new TwoFourTreeException("log is closed");
+        }
+        int payloadSize = payloadSize(operation, key, element);
+        if (pending.remaining() < RECORD_HEADER_SIZE + payloadSize) {
+            ByteBuffer larger = ByteBuffer.allocate(
+                    Math.max(2 * pending.capacity(), pending.position() + RECORD_HEADER_SIZE + payloadSize));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER_SIZE);
+        pending.put(operation);
+        keyCodec.encode(key, pending);
+        if (operation == INSERT) {
+            elementCodec.encode(element, pending);
+        }
+        checksum.reset();
+        checksum.update(pending.array(), start + RECORD_HEADER_SIZE, payloadSize);
+        pending.putInt(start, payloadSize);
+        pending.putInt(start + 4, (int) checksum.getValue());
+        return ++appendedSequence;
+    }
+
+    private synchronized int bufferedBytes() {
+        return pending.position();
+    }
+
+    private synchronized void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("an earlier write to the log failed", failure);
+        }
+    }
+
+    /**
+     * Makes sure a record is written out, and forced if asked.  Only one
+     * thread flushes at a time, taking every record buffered so far; the
+     * others wait, and flush again themselves if that did not cover them.
+     * If the write or force fails, the file is cut back to where the flush
+     * began, since replay would stop at a partly written record and lose
+     * everything after it, and the records are put back in front of those
+     * appended meanwhile.
+     *
+     * @param sequence sequence number of the record
+     * @param force true to force the record to disk as well
+     * @exception UncheckedIOException if this or an earlier flush failed
+     */
+    private void flushTo(long sequence, boolean force) {
+		while(true) {
+			ByteBuffer toWrite;
+			long target;
+			synchronized(this) {
+				while(true) {
+					checkFailure();
+					if((force ? durableSequence : writtenSequence) >= sequence) {
+						return;
+					}
+					if(!flushing) {
+						break;
+					}
+					waitForFlush();
+				}
+				flushing = true;
+				target = appendedSequence;
+				toWrite = pending;
+				pending = spare;
+				spare = null;
+			}
+
+			IOException error = null;
+			try {
+				toWrite.flip();
+				while(toWrite.hasRemaining()) {
+					channel.write(toWrite);
+				}
+				if(force) {
+					channel.force(false);
+				}
+				writtenEnd += toWrite.limit();
+			}
+			catch(IOException exc) {
+				error = exc;
+				try {
+					channel.truncate(writtenEnd);
+					channel.position(writtenEnd);
+				}
+				catch(IOException again) {
+					exc.addSuppressed(again);
+				}
+				throw new UncheckedIOException(exc);
+			}
+			finally {
+				synchronized(this) {
+					if(error == null) {
+						toWrite.clear();
+						spare = toWrite;
+						writtenSequence = target;
+						if(force) {
+							durableSequence = target;
+						}
+					}else {
+						keepUnwritten(toWrite);
+						failure = error;
+					}
+					flushing = false;
+					notifyAll();
+				}
+			}
+		}
+    }
+
+    /**
+     * Puts the records of a failed flush back in front of those appended
+     * since it began.  The caller holds the monitor.
+     *
+     * @param unwritten buffer the flush was writing, flipped
+     */
+    private void keepUnwritten(ByteBuffer unwritten) {
+		unwritten.position(unwritten.limit());
+		unwritten.limit(unwritten.capacity());
+		pending.flip();
+		if(unwritten.remaining() < pending.remaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(unwritten.position() + pending.remaining());
+			unwritten.flip();
+			larger.put(unwritten);
+			unwritten = larger;
+		}
+		unwritten.put(pending);
+		pending.clear();
+		spare = pending;
+		pending = unwritten;
+    }
+
+    // waits, holding the monitor, until no flush is running
+    private void waitForFlush() {
+        boolean interrupted = false;
+        while (flushing) {
+            try {
+                wait();
+            }
+            catch (InterruptedException exc) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushPeriodically(long intervalMillis) {
+        while (true) {
+            try {
+                if (closing.await(intervalMillis, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+            catch (InterruptedException exc) {
+                return;
+            }
+            try {
+                sync();
+            }
+            catch (UncheckedIOException exc) {
+                // kept as the log's failure, for the writers to see
+                return;
+            }
+        }
+    }
+
+    private long scan(Dictionary<Object,Object> target) throws IOException {
+        return scan(target, new int[1]);
+    }
+
+    /**
+     * Reads the records from the start of the file up to the first torn
+     * one, applying each to target if there is one.
+     *
+     * @param target dictionary to apply records to, or null
+     * @param applied receives the number of whole records
+     * @return file position just past the last whole record
+     */
+    private long scan(Dictionary<Object,Object> target, int[] applied) throws IOException {
+		// the stream is not closed, since that would close the channel
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel.position(0)), WRITE_THRESHOLD));
+		CRC32 recordChecksum = new CRC32();
+		byte[] payload = new byte[256];
+		long validEnd = 0;
+		try {
+			while(true) {
+				int payloadSize = in.readInt();
+				int expected = in.readInt();
+				if(payloadSize < 1 || validEnd + RECORD_HEADER_SIZE + payloadSize > channel.size()) {
+					break;
+				}
+				if(payload.length < payloadSize) {
+					payload = new byte[Math.max(payloadSize, 2 * payload.length)];
+				}
+				in.readFully(payload, 0, payloadSize);
+				recordChecksum.reset();
+				recordChecksum.update(payload, 0, payloadSize);
+				if((int) recordChecksum.getValue() != expected) {
+					break;
+				}
+
+				if(target != null) {
+					ByteBuffer record = ByteBuffer.wrap(payload, 1, payloadSize - 1);
+					Object key = keyCodec.decode(record);
+					if(payload[0] == REMOVE) {
+						target.removeElement(key);
+					}else {
+						target.insertElement(key, (payload[0] == INSERT) ? elementCodec.decode(record) : null);
+					}
+				}
+				applied[0]++;
+				validEnd += RECORD_HEADER_SIZE + payloadSize;
+			}
+		}
+		catch(EOFException exc) {
+			// a torn record, or simply the end of the log
+		}
+		return validEnd;
+    }
+
+    /**
+     * Self-test: insert throughput for each durability with one and with
+     * several threads, then a crash that tears the last record, followed by
+     * a replay.
+     */
+    public static void main(String[] args) throws Exception {
+        for (Durability durability : Durability.values()) {
+            for (int threads : new int[] {1, 8}) {
+                File file = File.createTempFile("wal", ".log");
+                file.deleteOnExit();
+                final WriteAheadLog log = new WriteAheadLog(file, new IntegerCodec(),
+                        new IntegerCodec(), durability);
+                final LoggedDictionary<Object,Object> dictionary = new LoggedDictionary<Object,Object>(
+                        new TwoFourTree<Object,Object>(new IntegerComparator()), log);
+                final AtomicInteger nextKey = new AtomicInteger();
+                final int opsPerThread = (durability == Durability.SYNC) ? 2000 / threads : 200000 / threads;
+                Thread[] workers = new Thread[threads];
+                long startTime = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    workers[t] = new Thread(new Runnable() {
+                        public void run() {
+                            for (int i = 0; i < opsPerThread; i++) {
+                                int key = nextKey.getAndIncrement();
+                                dictionary.insertElement(key, key);
+                            }
+                        }
+                    });
+                    workers[t].start();
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                long elapsed = System.nanoTime() - startTime;
+                log.close();
+
+                TwoFourTree<Object,Object> replayed = new TwoFourTree<Object,Object>(new IntegerComparator());
+                WriteAheadLog reopened = new WriteAheadLog(file, new IntegerCodec(),
+                        new IntegerCodec(), durability);
+                int applied = reopened.replay(replayed);
+                reopened.close();
+                if (applied != threads * opsPerThread || replayed.size() != applied) {
+                    throw new TwoFourTreeException("main: replayed " + applied + " records");
+                }
+                System.out.println(durability + ", " + threads + " threads: "
+                        + (long) (threads * opsPerThread / (elapsed / 1e9)) + " inserts/s");
+            }
+        }
+        System.out.println("test 1: durability modes done");
+
+        File file = File.createTempFile("wal", ".log");
+        file.deleteOnExit();
+        WriteAheadLog log = new WriteAheadLog(file, new IntegerCodec(), new StringCodec(), Durability.SYNC);
+        LoggedDictionary<Object,Object> dictionary = new LoggedDictionary<Object,Object>(
+                new TwoFourTree<Object,Object>(new IntegerComparator()), log);
+        Random rng = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            dictionary.insertElement(rng.nextInt(100), (i % 7 == 0) ? null : "element " + i);
+            if (i % 3 == 0) {
+                try {
+                    dictionary.removeElement(rng.nextInt(100));
+                }
+                catch (ElementNotFoundException exc) {
+                    // not logged
+                }
+            }
+        }
+        int expectedSize = dictionary.size();
+        log.close();
+
+        // a crash in the middle of appending a record
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        long validSize = channel.size();
+        channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 20, 1, 2, 3, 4, INSERT, 0}), validSize);
+        channel.close();
+
+        log = new WriteAheadLog(file, new IntegerCodec(), new StringCodec(), Durability.SYNC);
+        TwoFourTree<Object,Object> replayed = new TwoFourTree<Object,Object>(new IntegerComparator());
+        log.replay(replayed);
+        if (replayed.size() != expectedSize || file.length() != validSize) {
+            throw new TwoFourTreeException("main: replay after a torn record gave "
+                    + replayed.size() + " items, not " + expectedSize);
+        }
+        new LoggedDictionary<Object,Object>(replayed, log).insertElement(1000, "after the crash");
+        log.close();
+        System.out.println("test 2: torn record replay done");
+
+        // a write that fails: here the channel is closed under the log
+        file = File.createTempFile("wal", ".log");
+        file.deleteOnExit();
+        log = new WriteAheadLog(file, new IntegerCodec(), new IntegerCodec(), Durability.SYNC);
+        log.commit(log.logInsert(1, 1));
+        log.channel.close();
+        long lost = log.logInsert(2, 2);
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                if (attempt == 0) {
+                    log.commit(lost);
+                }
+                else if (attempt == 1) {
+                    log.sync();
+                }
+                else {
+                    log.commit(log.logInsert(3, 3));
+                }
+                throw new TwoFourTreeException("main: attempt " + attempt + " after a failed write succeeded");
+            }
+            catch (UncheckedIOException exc) {
+                // refused, as it should be
+            }
+        }
+        if (log.bufferedBytes() != 2 * (RECORD_HEADER_SIZE + 1 + 4 + 4)) {
+            throw new TwoFourTreeException("main: failed write kept " + log.bufferedBytes() + " bytes");
+        }
+        try {
+            log.close();
+            throw new TwoFourTreeException("main: close after a failed write succeeded");
+        }
+        catch (UncheckedIOException exc) {
+            // refused, and the file is closed all the same
+        }
+        log = new WriteAheadLog(file, new IntegerCodec(), new IntegerCodec(), Durability.SYNC);
+        replayed = new TwoFourTree<Object,Object>(new IntegerComparator());
+        if (log.replay(replayed) != 1 || !replayed.containsKey(1)) {
+            throw new TwoFourTreeException("main: replay after a failed write gave " + replayed.size() + " items");
+        }
+        log.close();
+        System.out.println("test 3: failed write done");
+
+        // a key the log can encode but the tree cannot compare, and an
+        // element the log cannot encode: neither may reach the log
+        file = File.createTempFile("wal", ".log");
+        file.deleteOnExit();
+        log = new WriteAheadLog(file, new StringCodec(), new IntegerCodec(), Durability.SYNC);
+        TwoFourTree<Object,Object> integerTree = new TwoFourTree<Object,Object>(new IntegerComparator());
+        // so that there is a key to compare with
+        integerTree.insertElement(0, 0);
+        LoggedDictionary<Object,Object> integerKeys = new LoggedDictionary<Object,Object>(integerTree, log);
+        dictionary = new LoggedDictionary<Object,Object>(new TwoFourTree<Object,Object>(), log);
+        try {
+            integerKeys.insertElement("not an integer", 1);
+            throw new TwoFourTreeException("main: tree took a String key");
+        }
+        catch (InvalidIntegerException exc) {
+            // the tree's comparator refused it
+        }
+        try {
+            dictionary.insertElement("a", "not an integer");
+            throw new TwoFourTreeException("main: log took a String element");
+        }
+        catch (InvalidIntegerException exc) {
+            // the element codec refused it
+        }
+        dictionary.insertElement("b", 2);
+        log.close();
+        log = new WriteAheadLog(file, new StringCodec(), new IntegerCodec(), Durability.SYNC);
+        if (integerKeys.size() != 1 || dictionary.size() != 1
+                || log.replay(new TwoFourTree<Object,Object>()) != 1) {
+            throw new TwoFourTreeException("main: rejected inserts were logged or applied");
+        }
+        log.close();
+        System.out.println("test 4: rejected inserts done");
+    }
+}